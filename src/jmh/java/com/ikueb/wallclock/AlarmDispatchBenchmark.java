@@ -0,0 +1,78 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Alarm dispatch of {@link FixedAlarmClock#setDateTime(LocalDateTime)}, scaling by the
+ * number of registrations and listeners. <br>
+ * Registrations are spread evenly across the listeners (with at least one registration
+ * per listener), and every other invocation triggers exactly one of them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class AlarmDispatchBenchmark {
+
+    private static final LocalDateTime START = LocalDateTime.of(2016, 1, 1, 0, 0);
+    private static final LocalDateTime[] DATETIMES = { START, START.plusSeconds(1) };
+
+    @Param({ "1", "1000", "1000000" })
+    private int registrations;
+
+    @Param({ "1", "100", "10000" })
+    private int listeners;
+
+    private FixedAlarmClock clock;
+    private int index;
+    private long triggered;
+
+    @Setup
+    public void setUp() {
+        clock = new FixedAlarmClock(START.minusSeconds(1), ZoneOffset.UTC);
+        int listenerCount = Math.min(listeners, registrations);
+        AlarmClockListener[] instances = new AlarmClockListener[listenerCount];
+        for (int i = 0; i < listenerCount; i++) {
+            instances[i] = zdt -> triggered++;
+        }
+        for (int i = 0; i < registrations; i++) {
+            clock.alarm(instances[i % listenerCount], START.plusSeconds(i + 1));
+        }
+    }
+
+    @Benchmark
+    public FixedAlarmClock set() {
+        return clock.setDateTime(DATETIMES[index++ & 1]);
+    }
+}
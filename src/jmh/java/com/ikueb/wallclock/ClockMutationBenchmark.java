@@ -0,0 +1,84 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Mutation paths of the {@link FixedWallClock} implementations, without any alarms
+ * registered.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClockMutationBenchmark {
+
+    private static final Duration ONE_NANO = Duration.ofNanos(1);
+    private static final LocalDateTime START = LocalDateTime.of(2016, 1, 1, 0, 0);
+    private static final LocalDateTime[] DATETIMES = { START, START.plusSeconds(1) };
+    private static final String[] TEXTS = { START.toString() + ":00",
+            START.plusSeconds(1).toString() };
+
+    @Param({ "FixedClock", "FixedAlarmClock" })
+    private String type;
+
+    private AbstractFixedWallClock clock;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        clock = "FixedClock".equals(type) ? new FixedClock(START, ZoneOffset.UTC)
+                : new FixedAlarmClock(START, ZoneOffset.UTC);
+    }
+
+    @Benchmark
+    public WallClock offset() {
+        return clock.offset(ONE_NANO);
+    }
+
+    @Benchmark
+    public FixedWallClock setDateTime() {
+        return clock.setDateTime(DATETIMES[index++ & 1]);
+    }
+
+    @Benchmark
+    public FixedWallClock setDateTimeParsed() {
+        return clock.setDateTime(LocalDateTime.parse(TEXTS[index++ & 1]));
+    }
+
+    @Benchmark
+    public FixedWallClock setDateTimeIso8601Parser() {
+        return Iso8601Parser.setDateTime(clock, TEXTS[index++ & 1]);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Read paths per {@link WallClock} implementation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClockReadBenchmark {
+
+    @Param({ "TickingClock", "FixedClock", "FixedAlarmClock" })
+    private String type;
+
+    private WallClock clock;
+
+    @Setup
+    public void setUp() {
+        clock = Clocks.valueOf(type).create();
+    }
+
+    @Benchmark
+    public Instant instant() {
+        return clock.instant();
+    }
+
+    @Benchmark
+    public long millis() {
+        return clock.millis();
+    }
+
+    @Benchmark
+    public ZonedDateTime zonedDateTime() {
+        return clock.zonedDateTime();
+    }
+
+    @Benchmark
+    public LocalDateTime dateTime() {
+        return clock.dateTime();
+    }
+
+    /**
+     * The clock implementations under test.
+     */
+    enum Clocks {
+        TickingClock {
+            @Override
+            WallClock create() {
+                return new TickingClock();
+            }
+        },
+        FixedClock {
+            @Override
+            WallClock create() {
+                return new FixedClock();
+            }
+        },
+        FixedAlarmClock {
+            @Override
+            WallClock create() {
+                return new FixedAlarmClock();
+            }
+        };
+
+        abstract WallClock create();
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Multi-threaded reads and writes on a single shared {@link FixedWallClock}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class ContendedClockBenchmark {
+
+    private static final Duration ONE_NANO = Duration.ofNanos(1);
+
+    @Param({ "FixedClock", "FixedAlarmClock" })
+    private String type;
+
+    private AbstractFixedWallClock clock;
+
+    @Setup
+    public void setUp() {
+        clock = "FixedClock".equals(type) ? new FixedClock() : new FixedAlarmClock();
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(3)
+    public Instant reader() {
+        return clock.instant();
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(1)
+    public WallClock writer() {
+        return clock.offset(ONE_NANO);
+    }
+
+    @Benchmark
+    @Group("readOnly")
+    @GroupThreads(4)
+    public ZonedDateTime readerOnly() {
+        return clock.zonedDateTime();
+    }
+
+    @Benchmark
+    @Group("writeOnly")
+    @GroupThreads(4)
+    public WallClock writerOnly() {
+        return clock.offset(ONE_NANO);
+    }
+}
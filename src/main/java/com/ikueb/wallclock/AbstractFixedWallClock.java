@@ -18,7 +18,10 @@ package com.ikueb.wallclock;
 import java.io.Serializable;
 import java.time.*;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * A mutable {@link WallClock} abstract class that provides a fixed instant. <br>
@@ -26,14 +29,22 @@ import java.util.concurrent.atomic.AtomicReference;
  * additional underlying {@link Instant} field, but that is really a cache of calling
  * {@link ZonedDateTime#toInstant()} whenever the date and/or time is updated. The
  * time-zone is encoded within the {@link ZonedDateTime} instance, and is an immutable
- * property.
+ * property. <br>
+ * Every change increments a {@link #version()}, so that pollers can detect changes
+ * cheaply, or wait for them with {@link #awaitChange(long)}.
  */
 public abstract class AbstractFixedWallClock extends Clock
         implements FixedWallClock, Serializable {
 
     private static final long serialVersionUID = 1L;
+    private static final int SPINS = 128;
+    private static final AtomicLongFieldUpdater<AbstractFixedWallClock> VERSION =
+            AtomicLongFieldUpdater.newUpdater(AbstractFixedWallClock.class, "version");
     private transient AtomicReference<ZonedDateTime> zdt = ref(ZonedDateTime.now());
     private transient AtomicReference<Instant> instant = ref(zdt.get().toInstant());
+    private transient volatile long version;
+    private transient ConcurrentLinkedQueue<Thread> waiters = new ConcurrentLinkedQueue<>();
+    private transient volatile ClockChangePublisher publisher;
 
     private static <T> AtomicReference<T> ref(T value) {
         return new AtomicReference<>(value);
@@ -185,14 +196,112 @@ public abstract class AbstractFixedWallClock extends Clock
         return clock != null && zdt.get().equals(clock.zonedDateTime());
     }
 
+    /**
+     * Returns the publisher of every change of this clock, creating it if required, or if
+     * the previous one is closed. Changes are delivered asynchronously, so setting this
+     * clock never waits for subscribers.
+     *
+     * @return the publisher of changes of this clock
+     */
+    public synchronized ClockChangePublisher changes() {
+        if (publisher == null || publisher.isClosed()) {
+            publisher = new ClockChangePublisher();
+        }
+        return publisher;
+    }
+
+    /**
+     * Returns the number of times this clock was set, which is incremented after the new
+     * date and time is visible. Comparing versions is cheaper than comparing dates and
+     * times, as reading it is a single volatile read.
+     *
+     * @return the version of this clock
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Waits until this clock is set after the given version.
+     *
+     * @param version the version to wait past, e.g. from {@link #version()}
+     * @return the new version
+     * @throws InterruptedException if interrupted while waiting
+     * @see #awaitChange(long, Duration)
+     */
+    public long awaitChange(long version) throws InterruptedException {
+        return awaitChange(version, Long.MAX_VALUE);
+    }
+
+    /**
+     * Waits until this clock is set after the given version, or the timeout elapses. <br>
+     * Waiting spins briefly first, as clocks under test are often set in quick succession,
+     * and then parks until the clock is set.
+     *
+     * @param version the version to wait past, e.g. from {@link #version()}
+     * @param timeout the maximum duration to wait, not null
+     * @return the new version, or {@code version} if the timeout elapses first
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public long awaitChange(long version, Duration timeout) throws InterruptedException {
+        long nanos;
+        try {
+            nanos = timeout.toNanos();
+        } catch (ArithmeticException e) {
+            nanos = timeout.isNegative() ? 0 : Long.MAX_VALUE;
+        }
+        return awaitChange(version, nanos);
+    }
+
+    private long awaitChange(long version, long nanos) throws InterruptedException {
+        long current;
+        for (int i = 0; i < SPINS; i++) {
+            if ((current = this.version) != version) {
+                return current;
+            }
+        }
+        long deadline = System.nanoTime() + nanos;
+        Thread thread = Thread.currentThread();
+        waiters.add(thread);
+        try {
+            while ((current = this.version) == version) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                if (nanos == Long.MAX_VALUE) {
+                    LockSupport.park(this);
+                } else {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    LockSupport.parkNanos(this, remaining);
+                }
+            }
+            return current;
+        } finally {
+            waiters.remove(thread);
+        }
+    }
+
     /**
      * @param source the source to set to, not null
      * @throws IllegalArgumentException if {@code source} is {@code null}
      */
     void set(ZonedDateTime source) {
         if (source != null) {
+            Instant current = source.toInstant();
             zdt.set(source);
-            instant.set(zdt.get().toInstant());
+            Instant previous = instant.getAndSet(current);
+            VERSION.incrementAndGet(this);
+            if (!waiters.isEmpty()) {
+                waiters.forEach(LockSupport::unpark);
+            }
+            ClockEvents.mutation(this, previous, current);
+            ClockChangePublisher changes = publisher;
+            if (changes != null) {
+                changes.publish(previous, current);
+            }
             return;
         }
         throw new IllegalArgumentException("source to set from cannot be null.");
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import java.lang.management.ManagementFactory;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Instrumentation of a {@link FixedAlarmClock}, obtained from
+ * {@link FixedAlarmClock#instrument()}. <br>
+ * This is both a plain metrics API, and a {@link AlarmClockMetricsMXBean} that can be
+ * registered with the platform {@link MBeanServer} via {@link #registerMBean()}.
+ * Dispatch latencies are measured per listener, in nanoseconds. The slowest listeners
+ * exclude {@link FixedAlarmClock#weaken weakly held} ones, so that they can still be
+ * garbage collected, and are discarded once a listener is unregistered.
+ */
+public final class AlarmClockMetrics implements AlarmClockMetricsMXBean {
+
+    private static final int SLOWEST_LISTENERS = 10;
+
+    private final FixedAlarmClock clock;
+    private final LongAdder setCalls = new LongAdder();
+    private final LongAdder matchesEvaluated = new LongAdder();
+    private final LongAdder alarmsFired = new LongAdder();
+    private final LatencyHistogram dispatchLatency = new LatencyHistogram();
+    private final ConcurrentHashMap<AlarmClockListener, AtomicLong> maxLatencies =
+            new ConcurrentHashMap<>();
+    private volatile ObjectName objectName;
+
+    AlarmClockMetrics(FixedAlarmClock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * @return the number of times the clock was set
+     */
+    public long setCalls() {
+        return setCalls.sum();
+    }
+
+    /**
+     * @return the number of matches evaluated against a new date and time: one lookup
+     *         of each of its date, time and date-time per listener with alarms, and one
+     *         per listener registered for all updates
+     */
+    public long matchesEvaluated() {
+        return matchesEvaluated.sum();
+    }
+
+    /**
+     * @return the number of alarms fired
+     */
+    public long alarmsFired() {
+        return alarmsFired.sum();
+    }
+
+    /**
+     * @return the number of alarm registrations per listener, where registering for all
+     *         updates counts as one
+     */
+    public Map<AlarmClockListener, Integer> registrations() {
+        return clock.registrations();
+    }
+
+    /**
+     * @return the number of weakly held listeners unregistered after being garbage
+     *         collected
+     */
+    public long listenersPurged() {
+        return clock.purged();
+    }
+
+    /**
+     * @return the histogram of dispatch latencies per listener
+     */
+    public LatencyHistogram dispatchLatency() {
+        return dispatchLatency;
+    }
+
+    /**
+     * @param limit the maximum number of listeners to return
+     * @return the maximum dispatch latency of the slowest listeners, slowest first
+     */
+    public Map<AlarmClockListener, Long> slowestListeners(int limit) {
+        return maxLatencies.entrySet().stream()
+                .sorted(Comparator.comparingLong(
+                        (Map.Entry<AlarmClockListener, AtomicLong> e) -> e.getValue().get())
+                        .reversed())
+                .limit(limit)
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().get(),
+                        (a, b) -> a, LinkedHashMap::new));
+    }
+
+    @Override
+    public long getSetCalls() {
+        return setCalls();
+    }
+
+    @Override
+    public long getMatchesEvaluated() {
+        return matchesEvaluated();
+    }
+
+    @Override
+    public long getAlarmsFired() {
+        return alarmsFired();
+    }
+
+    @Override
+    public Map<String, Integer> getRegistrations() {
+        return byName(registrations());
+    }
+
+    @Override
+    public long getListenersPurged() {
+        return listenersPurged();
+    }
+
+    @Override
+    public long getDispatchLatencyP50() {
+        return dispatchLatency.valueAtPercentile(50);
+    }
+
+    @Override
+    public long getDispatchLatencyP99() {
+        return dispatchLatency.valueAtPercentile(99);
+    }
+
+    @Override
+    public long getDispatchLatencyP999() {
+        return dispatchLatency.valueAtPercentile(99.9);
+    }
+
+    @Override
+    public long getDispatchLatencyMax() {
+        return dispatchLatency.max();
+    }
+
+    @Override
+    public Map<String, Long> getSlowestListeners() {
+        return byName(slowestListeners(SLOWEST_LISTENERS));
+    }
+
+    @Override
+    public void reset() {
+        setCalls.reset();
+        matchesEvaluated.reset();
+        alarmsFired.reset();
+        dispatchLatency.reset();
+        maxLatencies.clear();
+    }
+
+    /**
+     * Registers this with the platform {@link MBeanServer}, under the name
+     * {@code com.ikueb.wallclock:type=FixedAlarmClock,id=<identity hash code>}.
+     *
+     * @return the name registered under
+     * @throws IllegalStateException if the registration fails
+     */
+    public synchronized ObjectName registerMBean() {
+        if (objectName == null) {
+            try {
+                ObjectName name = new ObjectName("com.ikueb.wallclock:type="
+                        + FixedAlarmClock.class.getSimpleName() + ",id="
+                        + Integer.toHexString(System.identityHashCode(clock)));
+                ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+                objectName = name;
+            } catch (JMException e) {
+                throw new IllegalStateException("Cannot register MBean.", e);
+            }
+        }
+        return objectName;
+    }
+
+    /**
+     * Unregisters this from the platform {@link MBeanServer}, if registered.
+     *
+     * @throws IllegalStateException if the unregistration fails
+     */
+    public synchronized void unregisterMBean() {
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+                objectName = null;
+            } catch (JMException e) {
+                throw new IllegalStateException("Cannot unregister MBean.", e);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[setCalls=" + setCalls() + ", evaluated="
+                + matchesEvaluated() + ", fired=" + alarmsFired() + ", latency="
+                + dispatchLatency + "]";
+    }
+
+    void recordSet() {
+        setCalls.increment();
+    }
+
+    /**
+     * @param listener the listener dispatched to, or {@code null} to not track its latency
+     */
+    void recordDispatch(AlarmClockListener listener, int evaluated, int fired,
+            long nanos) {
+        matchesEvaluated.add(evaluated);
+        alarmsFired.add(fired);
+        dispatchLatency.record(nanos);
+        if (listener == null) {
+            return;
+        }
+        AtomicLong max = maxLatencies.computeIfAbsent(listener, k -> new AtomicLong());
+        long current;
+        while (nanos > (current = max.get()) && !max.compareAndSet(current, nanos)) {
+            // retry
+        }
+    }
+
+    void forget(AlarmClockListener listener) {
+        maxLatencies.remove(listener);
+    }
+
+    /**
+     * @param registered the listeners to keep the latencies of
+     */
+    void retain(Set<AlarmClockListener> registered) {
+        maxLatencies.keySet().retainAll(registered);
+    }
+
+    private static <V> Map<String, V> byName(Map<AlarmClockListener, V> map) {
+        return map.entrySet().stream().collect(Collectors.toMap(
+                e -> String.valueOf(e.getKey()), Map.Entry::getValue, (a, b) -> a,
+                LinkedHashMap::new));
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import java.util.Map;
+
+/**
+ * The JMX management interface of {@link AlarmClockMetrics}. <br>
+ * Listeners are identified by their {@link Object#toString()} representation, and
+ * latencies are in nanoseconds.
+ */
+public interface AlarmClockMetricsMXBean {
+
+    /**
+     * @return the number of times the clock was set
+     */
+    long getSetCalls();
+
+    /**
+     * @return the number of matches evaluated against a new date and time: one lookup
+     *         of each of its date, time and date-time per listener with alarms, and one
+     *         per listener registered for all updates
+     */
+    long getMatchesEvaluated();
+
+    /**
+     * @return the number of alarms fired
+     */
+    long getAlarmsFired();
+
+    /**
+     * @return the number of alarm registrations per listener
+     */
+    Map<String, Integer> getRegistrations();
+
+    /**
+     * @return the number of weakly held listeners unregistered after being garbage
+     *         collected
+     */
+    long getListenersPurged();
+
+    /**
+     * @return the median dispatch latency per listener
+     */
+    long getDispatchLatencyP50();
+
+    /**
+     * @return the 99th percentile dispatch latency per listener
+     */
+    long getDispatchLatencyP99();
+
+    /**
+     * @return the 99.9th percentile dispatch latency per listener
+     */
+    long getDispatchLatencyP999();
+
+    /**
+     * @return the maximum dispatch latency per listener
+     */
+    long getDispatchLatencyMax();
+
+    /**
+     * @return the maximum dispatch latency of the slowest listeners
+     */
+    Map<String, Long> getSlowestListeners();
+
+    /**
+     * Resets all counters and latencies.
+     */
+    void reset();
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timestamp;
+
+/**
+ * A Java Flight Recorder event for dispatching a new date and time to an
+ * {@link AlarmClockListener} of a {@link FixedAlarmClock}. <br>
+ * Only dispatches taking at least the threshold duration, 1 ms by default, are recorded.
+ */
+@Name("com.ikueb.wallclock.AlarmDispatch")
+@Label("Alarm Dispatch")
+@Category("Wallclock")
+@Description("A listener of a fixed alarm clock is evaluated and triggered")
+@Threshold("1 ms")
+final class AlarmDispatchEvent extends Event {
+
+    static final EventType TYPE = EventType.getEventType(AlarmDispatchEvent.class);
+
+    @Label("Listener Class")
+    Class<?> listenerClass;
+
+    @Label("Instant")
+    @Timestamp(Timestamp.MILLISECONDS_SINCE_EPOCH)
+    long instant;
+
+    @Label("Matches Evaluated")
+    int evaluated;
+
+    @Label("Alarms Fired")
+    int fired;
+
+    /**
+     * @return {@code true} if this event type is enabled in a recording
+     */
+    static boolean isTypeEnabled() {
+        return TYPE.isEnabled();
+    }
+
+    /**
+     * @return a started event, only via {@link ClockEvents#beginDispatch()}
+     */
+    static Object start() {
+        AlarmDispatchEvent event = new AlarmDispatchEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends an event from {@link #start()}, and commits it if it exceeds the threshold.
+     */
+    static void end(Object started, Class<?> listenerClass, long instant, int evaluated,
+            int fired) {
+        AlarmDispatchEvent event = (AlarmDispatchEvent) started;
+        event.end();
+        if (event.shouldCommit()) {
+            event.listenerClass = listenerClass;
+            event.instant = instant;
+            event.evaluated = evaluated;
+            event.fired = fired;
+            event.commit();
+        }
+    }
+}
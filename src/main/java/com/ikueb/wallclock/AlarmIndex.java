@@ -0,0 +1,291 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An immutable index of the alarms of an {@link AlarmRegistry}, by time and by listener,
+ * which answers the queries of {@link AlarmSchedule}. <br>
+ * Alarms for a date and time are scheduled at that date and time, alarms for a date at
+ * the start of that date, and alarms for a time at that time of every day. Listeners are
+ * identified by their registration sequence.
+ *
+ * @implNote Each kind of alarm is kept in two {@link PersistentSortedSet}s, ordered by
+ * time and by listener, so counts are O(log n) rank queries, and listing the alarms of a
+ * listener is O(log n + k) for k alarms.
+ */
+final class AlarmIndex {
+
+    private static final int DATE = 0;
+    private static final int DATE_TIME = 1;
+
+    /**
+     * An alarm of a listener at a date and time, or a time of every day.
+     */
+    private static final class Slot<T extends Comparable<? super T>> {
+
+        private final T time;
+        private final long sequence;
+        private final int kind;
+
+        Slot(T time, long sequence, int kind) {
+            this.time = time;
+            this.sequence = sequence;
+            this.kind = kind;
+        }
+
+        /**
+         * Orders by time, then alarms for a date before alarms for a date and time.
+         */
+        static <T extends Comparable<? super T>> Comparator<Slot<T>> byTime() {
+            return (a, b) -> {
+                int result = a.time.compareTo(b.time);
+                if (result == 0) {
+                    result = Integer.compare(a.kind, b.kind);
+                }
+                return result == 0 ? Long.compare(a.sequence, b.sequence) : result;
+            };
+        }
+
+        static <T extends Comparable<? super T>> Comparator<Slot<T>> byListener() {
+            return (a, b) -> {
+                int result = Long.compare(a.sequence, b.sequence);
+                if (result == 0) {
+                    result = a.time.compareTo(b.time);
+                }
+                return result == 0 ? Integer.compare(a.kind, b.kind) : result;
+            };
+        }
+
+        @Override
+        public String toString() {
+            return time + "#" + sequence;
+        }
+    }
+
+    static final AlarmIndex EMPTY = new AlarmIndex(
+            PersistentSortedSet.empty(Slot.byTime()),
+            PersistentSortedSet.empty(Slot.byListener()),
+            PersistentSortedSet.empty(Slot.byTime()),
+            PersistentSortedSet.empty(Slot.byListener()));
+
+    private final PersistentSortedSet<Slot<LocalDateTime>> datedByTime;
+    private final PersistentSortedSet<Slot<LocalDateTime>> datedByListener;
+    private final PersistentSortedSet<Slot<LocalTime>> dailyByTime;
+    private final PersistentSortedSet<Slot<LocalTime>> dailyByListener;
+
+    private AlarmIndex(PersistentSortedSet<Slot<LocalDateTime>> datedByTime,
+            PersistentSortedSet<Slot<LocalDateTime>> datedByListener,
+            PersistentSortedSet<Slot<LocalTime>> dailyByTime,
+            PersistentSortedSet<Slot<LocalTime>> dailyByListener) {
+        this.datedByTime = datedByTime;
+        this.datedByListener = datedByListener;
+        this.dailyByTime = dailyByTime;
+        this.dailyByListener = dailyByListener;
+    }
+
+    /**
+     * @param sequence the registration sequence of the listener
+     * @param time     the date and/or time of the alarm
+     * @return an index with the alarm
+     */
+    AlarmIndex plus(long sequence, Temporal time) {
+        if (time instanceof LocalTime) {
+            Slot<LocalTime> slot = new Slot<>((LocalTime) time, sequence, DATE_TIME);
+            return new AlarmIndex(datedByTime, datedByListener, dailyByTime.plus(slot),
+                    dailyByListener.plus(slot));
+        }
+        Slot<LocalDateTime> slot = dated(sequence, time);
+        return slot == null ? this : new AlarmIndex(datedByTime.plus(slot),
+                datedByListener.plus(slot), dailyByTime, dailyByListener);
+    }
+
+    /**
+     * @param sequence the registration sequence of the listener
+     * @param time     the date and/or time of the alarm
+     * @return an index without the alarm
+     */
+    AlarmIndex minus(long sequence, Temporal time) {
+        if (time instanceof LocalTime) {
+            Slot<LocalTime> slot = new Slot<>((LocalTime) time, sequence, DATE_TIME);
+            return new AlarmIndex(datedByTime, datedByListener, dailyByTime.minus(slot),
+                    dailyByListener.minus(slot));
+        }
+        Slot<LocalDateTime> slot = dated(sequence, time);
+        return slot == null ? this : new AlarmIndex(datedByTime.minus(slot),
+                datedByListener.minus(slot), dailyByTime, dailyByListener);
+    }
+
+    /**
+     * @return the number of alarms for dates and/or times
+     */
+    int size() {
+        return datedByTime.size() + dailyByTime.size();
+    }
+
+    /**
+     * @param after the date and time to start after
+     * @return {@code after} if there is an alarm for its date, as it is triggered on every
+     *         update during that date, else the earliest date and time strictly after
+     *         {@code after} with an alarm, or {@code null} if there is none
+     */
+    LocalDateTime next(LocalDateTime after) {
+        LocalDateTime today = after.toLocalDate().atStartOfDay();
+        Slot<LocalDateTime> first = datedByTime.higher(lower(today));
+        if (first != null && first.kind == DATE && first.time.equals(today)) {
+            return after;
+        }
+        Slot<LocalDateTime> dated = datedByTime.higher(upper(after));
+        LocalDateTime result = dated == null ? null : dated.time;
+        if (dailyByTime.isEmpty()) {
+            return result;
+        }
+        Slot<LocalTime> daily = dailyByTime.higher(
+                new Slot<>(after.toLocalTime(), Long.MAX_VALUE, Integer.MAX_VALUE));
+        LocalDateTime candidate;
+        if (daily != null) {
+            candidate = after.toLocalDate().atTime(daily.time);
+        } else if (after.toLocalDate().equals(LocalDate.MAX)) {
+            return result;
+        } else {
+            candidate = after.toLocalDate().plusDays(1).atTime(dailyByTime.first().time);
+        }
+        return result == null || candidate.isBefore(result) ? candidate : result;
+    }
+
+    /**
+     * @param from the date and time to count from, inclusive
+     * @param to   the date and time to count to, exclusive, not before {@code from}
+     * @return the number of alarms from {@code from} to {@code to}
+     */
+    long count(LocalDateTime from, LocalDateTime to) {
+        long result = datedByTime.rank(lower(to)) - datedByTime.rank(lower(from));
+        int daily = dailyByTime.size();
+        if (daily == 0) {
+            return result;
+        }
+        return result + occurrences(daily, dailyByTime.rank(lower(from.toLocalTime())),
+                dailyByTime.rank(lower(to.toLocalTime())), from, to);
+    }
+
+    /**
+     * @param sequence the registration sequence of the listener
+     * @param from     the date and time to count from, inclusive
+     * @param to       the date and time to count to, exclusive, not before {@code from}
+     * @return the number of alarms of the listener from {@code from} to {@code to}, in
+     *         O(log n)
+     */
+    long count(long sequence, LocalDateTime from, LocalDateTime to) {
+        long result = datedByListener.rank(new Slot<>(to, sequence, Integer.MIN_VALUE))
+                - datedByListener.rank(new Slot<>(from, sequence, Integer.MIN_VALUE));
+        int start = dailyByListener.rank(new Slot<>(LocalTime.MIN, sequence,
+                Integer.MIN_VALUE));
+        int daily = dailyByListener.rank(new Slot<>(LocalTime.MIN, sequence + 1,
+                Integer.MIN_VALUE)) - start;
+        if (daily == 0) {
+            return result;
+        }
+        return result + occurrences(daily, dailyByListener.rank(new Slot<>(
+                from.toLocalTime(), sequence, Integer.MIN_VALUE)) - start,
+                dailyByListener.rank(new Slot<>(to.toLocalTime(), sequence,
+                        Integer.MIN_VALUE)) - start, from, to);
+    }
+
+    /**
+     * Lists the alarms of a listener, which takes time proportional to their
+     * {@link #count(long, LocalDateTime, LocalDateTime) count}, so callers should check
+     * that first.
+     *
+     * @param sequence the registration sequence of the listener
+     * @param from     the date and time to list from, inclusive
+     * @param to       the date and time to list to, exclusive, not before {@code from}
+     * @return the dates and times of the alarms of the listener from {@code from} to
+     *         {@code to}, in ascending order
+     */
+    List<LocalDateTime> alarms(long sequence, LocalDateTime from, LocalDateTime to) {
+        List<LocalDateTime> dated = new ArrayList<>();
+        datedByListener.forEach(new Slot<>(from, sequence, Integer.MIN_VALUE),
+                new Slot<>(to, sequence, Integer.MIN_VALUE), slot -> dated.add(slot.time));
+        List<LocalTime> times = new ArrayList<>();
+        dailyByListener.forEach(new Slot<>(LocalTime.MIN, sequence, Integer.MIN_VALUE),
+                new Slot<>(LocalTime.MIN, sequence + 1, Integer.MIN_VALUE),
+                slot -> times.add(slot.time));
+        if (times.isEmpty()) {
+            return dated;
+        }
+        List<LocalDateTime> result = new ArrayList<>();
+        int index = 0;
+        for (LocalDate date = from.toLocalDate(); !date.isAfter(to.toLocalDate());
+                date = date.plusDays(1)) {
+            for (LocalTime time : times) {
+                LocalDateTime daily = date.atTime(time);
+                if (daily.isBefore(from) || !daily.isBefore(to)) {
+                    continue;
+                }
+                while (index < dated.size() && !dated.get(index).isAfter(daily)) {
+                    result.add(dated.get(index++));
+                }
+                result.add(daily);
+            }
+            if (date.equals(LocalDate.MAX)) {
+                break;
+            }
+        }
+        result.addAll(dated.subList(index, dated.size()));
+        return result;
+    }
+
+    /**
+     * @param daily    the number of times of every day
+     * @param fromRank the number of those times before the time of {@code from}
+     * @param toRank   the number of those times before the time of {@code to}
+     * @return the number of occurrences of the times from {@code from} to {@code to}
+     */
+    private static long occurrences(int daily, int fromRank, int toRank,
+            LocalDateTime from, LocalDateTime to) {
+        if (from.toLocalDate().equals(to.toLocalDate())) {
+            return toRank - fromRank;
+        }
+        long days = ChronoUnit.DAYS.between(from.toLocalDate(), to.toLocalDate()) - 1;
+        return (daily - fromRank) + days * daily + toRank;
+    }
+
+    private static Slot<LocalDateTime> dated(long sequence, Temporal time) {
+        if (time instanceof LocalDateTime) {
+            return new Slot<>((LocalDateTime) time, sequence, DATE_TIME);
+        }
+        if (time instanceof LocalDate) {
+            return new Slot<>(((LocalDate) time).atStartOfDay(), sequence, DATE);
+        }
+        return null;
+    }
+
+    private static <T extends Comparable<? super T>> Slot<T> lower(T time) {
+        return new Slot<>(time, Long.MIN_VALUE, Integer.MIN_VALUE);
+    }
+
+    private static Slot<LocalDateTime> upper(LocalDateTime time) {
+        return new Slot<>(time, Long.MAX_VALUE, Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,499 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.temporal.Temporal;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * The alarm registrations of a {@link FixedAlarmClock}, kept in dispatch order. <br>
+ * Listeners with a higher priority are dispatched to first, and listeners with the same
+ * priority are dispatched to in the order they are registered. A listener that is snoozed
+ * completely and registered again is treated as newly registered. Listeners can also be
+ * held weakly, in which case they are unregistered once they are garbage collected.
+ *
+ * @implNote All registrations are kept in an immutable {@link State}: a
+ * {@link PersistentHashMap} to look up registrations by listener, a
+ * {@link PersistentSortedSet} ordered by priority and registration sequence, and an
+ * {@link AlarmIndex} of their dates and/or times. Every change builds a new state that
+ * shares all but O(log n) nodes with the previous one, and replaces it with a
+ * compare-and-set. Dispatching and queries therefore read a consistent state without
+ * locking or sorting, and taking and restoring a {@link #state()} is O(1). The keys of the
+ * map are weak references, which are kept reachable by the registration of listeners held
+ * strongly, and are only created when registering: lookups use a strong wrapper instead.
+ * Keys of collected listeners are enqueued on a {@link ReferenceQueue}, which is drained
+ * by {@link #purge()} when dispatching and registering.
+ */
+final class AlarmRegistry {
+
+    private static final Comparator<Temporal> TEMPORALS = (a, b) -> {
+        int result = Integer.compare(kind(a), kind(b));
+        return result == 0 ? compare(a, b) : result;
+    };
+    private static final PersistentSortedSet<Temporal> EVERY_UPDATE =
+            PersistentSortedSet.empty(TEMPORALS);
+
+    /**
+     * A weak reference to a listener, which is equal to other references to an equal
+     * listener as long as neither is cleared, like the keys of a
+     * {@link java.util.WeakHashMap}. It is also equal to a {@link Lookup} of an equal
+     * listener.
+     */
+    private static final class Key extends WeakReference<AlarmClockListener> {
+
+        private final int hash;
+
+        Key(AlarmClockListener listener, ReferenceQueue<AlarmClockListener> queue) {
+            super(listener, queue);
+            this.hash = listener.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) {
+                return true;
+            }
+            if (o instanceof Lookup) {
+                return ((Lookup) o).equals(this);
+            }
+            if (!(o instanceof Key) || hash != ((Key) o).hash) {
+                return false;
+            }
+            AlarmClockListener listener = get();
+            return listener != null && listener.equals(((Key) o).get());
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * A strong wrapper of a listener to look up its {@link Key} with, so that lookups do
+     * not create references for the garbage collector to process.
+     */
+    private static final class Lookup {
+
+        private final AlarmClockListener listener;
+        private final int hash;
+
+        Lookup(AlarmClockListener listener) {
+            this.listener = listener;
+            this.hash = listener.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) {
+                return true;
+            }
+            if (o instanceof Lookup) {
+                return listener.equals(((Lookup) o).listener);
+            }
+            return o instanceof Key && hash == ((Key) o).hash
+                    && listener.equals(((Key) o).get());
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * The alarms of one listener.
+     */
+    static final class Registration {
+
+        private static final Comparator<Registration> ORDER = Comparator
+                .comparingInt((Registration r) -> r.priority).reversed()
+                .thenComparingLong(r -> r.sequence);
+
+        private final Key key;
+        private final AlarmClockListener strong;
+        private final long sequence;
+        private final int priority;
+        private final PersistentSortedSet<Temporal> times;
+
+        private Registration(Key key, AlarmClockListener strong, long sequence, int priority,
+                PersistentSortedSet<Temporal> times) {
+            this.key = key;
+            this.strong = strong;
+            this.sequence = sequence;
+            this.priority = priority;
+            this.times = times;
+        }
+
+        /**
+         * @return the listener, or {@code null} if it is held weakly and collected
+         */
+        AlarmClockListener listener() {
+            return strong != null ? strong : key.get();
+        }
+
+        boolean isWeak() {
+            return strong == null;
+        }
+
+        int priority() {
+            return priority;
+        }
+
+        /**
+         * @return {@code true} if registered for all updates
+         */
+        boolean isEveryUpdate() {
+            return times.isEmpty();
+        }
+
+        /**
+         * @param time the date and/or time
+         * @return {@code true} if registered for the date and/or time, in O(log k)
+         */
+        boolean isAlarmedAt(Temporal time) {
+            return times.contains(time);
+        }
+
+        /**
+         * @return the number of alarms, where registering for all updates counts as one
+         */
+        int size() {
+            return Math.max(1, times.size());
+        }
+
+        private Registration with(AlarmClockListener strong, int priority,
+                PersistentSortedSet<Temporal> times) {
+            return new Registration(key, strong, sequence, priority, times);
+        }
+    }
+
+    /**
+     * An immutable state of the registrations.
+     */
+    static final class State {
+
+        private static final State EMPTY = new State(PersistentHashMap.empty(),
+                PersistentSortedSet.empty(Registration.ORDER), AlarmIndex.EMPTY);
+
+        private final PersistentHashMap<Key, Registration> byListener;
+        private final PersistentSortedSet<Registration> ordered;
+        private final AlarmIndex index;
+
+        private State(PersistentHashMap<Key, Registration> byListener,
+                PersistentSortedSet<Registration> ordered, AlarmIndex index) {
+            this.byListener = byListener;
+            this.ordered = ordered;
+            this.index = index;
+        }
+
+        /**
+         * @param before the registration to replace, or {@code null} to add
+         * @param after  the replacement, or {@code null} to remove
+         * @param index  the index after the replacement
+         * @return the state after the replacement
+         */
+        private State replace(Registration before, Registration after, AlarmIndex index) {
+            PersistentHashMap<Key, Registration> map = byListener;
+            PersistentSortedSet<Registration> set = ordered;
+            if (before != null) {
+                set = set.minus(before);
+            }
+            if (after == null) {
+                map = map.minus(before.key);
+            } else {
+                map = map.plus(after.key, after);
+                set = set.plus(after);
+            }
+            return new State(map, set, index);
+        }
+    }
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.EMPTY);
+    private final AtomicLong sequence = new AtomicLong();
+    private final ReferenceQueue<AlarmClockListener> collected = new ReferenceQueue<>();
+    private final LongAdder purged = new LongAdder();
+
+    boolean isEmpty() {
+        return state.get().byListener.isEmpty();
+    }
+
+    /**
+     * Visits the registrations in dispatch order, as of the start of this call, skipping
+     * and unregistering weakly held listeners that are garbage collected.
+     *
+     * @param action the action for each listener and its registration
+     */
+    void forEach(BiConsumer<AlarmClockListener, Registration> action) {
+        state.get().ordered.forEach(registration -> {
+            AlarmClockListener listener = registration.listener();
+            if (listener == null) {
+                remove(registration);
+            } else {
+                action.accept(listener, registration);
+            }
+        });
+    }
+
+    /**
+     * Registers a listener for a date and/or time, or for all updates if {@code time} is
+     * {@code null}, which is ignored if the listener is already registered.
+     *
+     * @param listener the listener
+     * @param time     the date and/or time, or {@code null}
+     */
+    void alarm(AlarmClockListener listener, Temporal time) {
+        purge();
+        Lookup key = new Lookup(listener);
+        State current;
+        State next;
+        do {
+            current = state.get();
+            Registration before = current.byListener.get(key);
+            Registration after;
+            if (before == null) {
+                after = new Registration(new Key(listener, collected), listener,
+                        sequence.incrementAndGet(), 0,
+                        time == null ? EVERY_UPDATE : EVERY_UPDATE.plus(time));
+            } else if (time == null || before.times.contains(time)) {
+                return;
+            } else {
+                after = before.with(before.strong, before.priority, before.times.plus(time));
+            }
+            next = current.replace(before, after,
+                    time == null ? current.index : current.index.plus(after.sequence, time));
+        } while (!state.compareAndSet(current, next));
+    }
+
+    /**
+     * Unregisters a listener for a date and/or time, or completely if {@code time} is
+     * {@code null}. Unregistering its last date and/or time unregisters it completely.
+     *
+     * @param listener the listener
+     * @param time     the date and/or time, or {@code null}
+     * @return {@code true} if the listener is unregistered completely
+     */
+    boolean snooze(AlarmClockListener listener, Temporal time) {
+        Lookup key = new Lookup(listener);
+        State current;
+        State next;
+        do {
+            current = state.get();
+            Registration before = current.byListener.get(key);
+            if (before == null) {
+                return false;
+            }
+            PersistentSortedSet<Temporal> times =
+                    time == null ? EVERY_UPDATE : before.times.minus(time);
+            if (times.isEmpty()) {
+                next = current.replace(before, null, unindex(current.index, before));
+            } else if (times == before.times) {
+                return false;
+            } else {
+                next = current.replace(before,
+                        before.with(before.strong, before.priority, times),
+                        current.index.minus(before.sequence, time));
+            }
+        } while (!state.compareAndSet(current, next));
+        return next.byListener.size() < current.byListener.size();
+    }
+
+    /**
+     * @param listener the listener
+     * @param priority the priority
+     * @return {@code true} if the listener is registered
+     */
+    boolean prioritize(AlarmClockListener listener, int priority) {
+        Lookup key = new Lookup(listener);
+        State current;
+        State next;
+        do {
+            current = state.get();
+            Registration before = current.byListener.get(key);
+            if (before == null) {
+                return false;
+            }
+            if (before.priority == priority) {
+                return true;
+            }
+            next = current.replace(before, before.with(before.strong, priority, before.times),
+                    current.index);
+        } while (!state.compareAndSet(current, next));
+        return true;
+    }
+
+    /**
+     * Holds a registered listener weakly, so that it is unregistered once it is garbage
+     * collected, until it is snoozed completely.
+     *
+     * @param listener the listener
+     * @return {@code true} if the listener is registered
+     */
+    boolean weaken(AlarmClockListener listener) {
+        Lookup key = new Lookup(listener);
+        State current;
+        State next;
+        do {
+            current = state.get();
+            Registration before = current.byListener.get(key);
+            if (before == null) {
+                return false;
+            }
+            if (before.isWeak()) {
+                return true;
+            }
+            next = current.replace(before, before.with(null, before.priority, before.times),
+                    current.index);
+        } while (!state.compareAndSet(current, next));
+        return true;
+    }
+
+    /**
+     * Unregisters weakly held listeners that are garbage collected.
+     *
+     * @return the number of listeners unregistered
+     */
+    int purge() {
+        int result = 0;
+        Key key;
+        while ((key = (Key) collected.poll()) != null) {
+            Registration registration = state.get().byListener.get(key);
+            if (registration != null && remove(registration)) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Clears and enqueues the reference to a weakly held listener, as if it is garbage
+     * collected, so that tests do not depend on the garbage collector.
+     *
+     * @param listener the listener
+     * @return {@code true} if the listener is registered and held weakly
+     */
+    boolean collect(AlarmClockListener listener) {
+        Registration registration = state.get().byListener.get(new Lookup(listener));
+        if (registration == null || !registration.isWeak()) {
+            return false;
+        }
+        registration.key.clear();
+        return registration.key.enqueue();
+    }
+
+    /**
+     * @return the total number of weakly held listeners unregistered after being garbage
+     *         collected
+     */
+    long purged() {
+        return purged.sum();
+    }
+
+    /**
+     * @return the number of alarm registrations per listener in dispatch order, where
+     *         registering for all updates counts as one
+     */
+    Map<AlarmClockListener, Integer> registrations() {
+        Map<AlarmClockListener, Integer> result = new LinkedHashMap<>();
+        state.get().ordered.forEach(registration -> {
+            AlarmClockListener listener = registration.listener();
+            if (listener != null) {
+                result.put(listener, registration.size());
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @return the index of the dates and/or times of all registrations
+     */
+    AlarmIndex index() {
+        return state.get().index;
+    }
+
+    /**
+     * @param listener the listener
+     * @return the registration sequence of the listener, or {@code 0} if it is not
+     *         registered
+     */
+    long sequenceOf(AlarmClockListener listener) {
+        Registration registration = state.get().byListener.get(new Lookup(listener));
+        return registration == null ? 0 : registration.sequence;
+    }
+
+    /**
+     * @return the current state, in O(1)
+     */
+    State state() {
+        return state.get();
+    }
+
+    /**
+     * Replaces the current state in O(1). Weakly held listeners in it that are garbage
+     * collected are unregistered as they are dispatched to.
+     *
+     * @param restored the state to restore, from {@link #state()} of this
+     */
+    void restore(State restored) {
+        state.set(restored);
+    }
+
+    /**
+     * Unregisters a weakly held listener that is garbage collected.
+     *
+     * @return {@code true} if it is unregistered by this call
+     */
+    private boolean remove(Registration registration) {
+        State current;
+        State next;
+        do {
+            current = state.get();
+            if (current.byListener.get(registration.key) != registration) {
+                return false;
+            }
+            next = current.replace(registration, null,
+                    unindex(current.index, registration));
+        } while (!state.compareAndSet(current, next));
+        purged.increment();
+        return true;
+    }
+
+    private static AlarmIndex unindex(AlarmIndex index, Registration registration) {
+        AlarmIndex[] result = { index };
+        registration.times.forEach(time -> result[0] = result[0].minus(registration.sequence,
+                time));
+        return result[0];
+    }
+
+    private static int kind(Temporal time) {
+        return time instanceof LocalDate ? 0 : time instanceof LocalTime ? 1 : 2;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static int compare(Temporal a, Temporal b) {
+        return ((Comparable) a).compareTo(b);
+    }
+}
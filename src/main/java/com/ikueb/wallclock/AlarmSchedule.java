@@ -0,0 +1,130 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Queries of the alarms registered on a {@link FixedAlarmClock}, obtained from
+ * {@link FixedAlarmClock#schedule()}, e.g. for a scheduler to decide how far to advance
+ * the clock. <br>
+ * Alarms for a date and time are scheduled at that date and time, alarms for a date at
+ * the start of that date, and alarms for a time at that time of every day. As an alarm for
+ * a date is triggered on every update during that date, it is also the next alarm at any
+ * time during it. Registrations for all updates are not scheduled at any particular time,
+ * and are excluded. Each query reflects the registrations at the time it is made.
+ *
+ * @implNote Queries are answered by an {@link AlarmIndex}: finding the next alarm and
+ * counting alarms are O(log n), and listing the alarms of a listener is O(log n + k) for
+ * k alarms.
+ */
+public final class AlarmSchedule {
+
+    /**
+     * The maximum number of alarms that {@link #alarms(AlarmClockListener, LocalDateTime,
+     * LocalDateTime)} lists.
+     */
+    public static final int MAX_ALARMS = 1_000_000;
+
+    private final FixedAlarmClock clock;
+    private final AlarmRegistry registry;
+
+    AlarmSchedule(FixedAlarmClock clock, AlarmRegistry registry) {
+        this.clock = clock;
+        this.registry = registry;
+    }
+
+    /**
+     * @return the number of alarms registered for dates and/or times
+     */
+    public int size() {
+        return registry.index().size();
+    }
+
+    /**
+     * @return the clock's current date and time if there is an alarm for its date, else
+     *         the earliest date and time after it with an alarm
+     */
+    public Optional<LocalDateTime> next() {
+        return next(clock.dateTime());
+    }
+
+    /**
+     * @param after the date and time to start after, not null
+     * @return {@code after} if there is an alarm for its date, else the earliest date and
+     *         time strictly after {@code after} with an alarm
+     */
+    public Optional<LocalDateTime> next(LocalDateTime after) {
+        return Optional.ofNullable(registry.index().next(Objects.requireNonNull(after)));
+    }
+
+    /**
+     * Counts the alarms in a window, where an alarm for a time counts once for every day
+     * in the window.
+     *
+     * @param from the start of the window, inclusive, not null
+     * @param to   the end of the window, exclusive, not null
+     * @return the number of alarms in the window
+     * @throws IllegalArgumentException if {@code to} is before {@code from}
+     */
+    public long count(LocalDateTime from, LocalDateTime to) {
+        validate(from, to);
+        return registry.index().count(from, to);
+    }
+
+    /**
+     * Lists the alarms of a listener in a window, where an alarm for a time is listed
+     * once for every day in the window.
+     *
+     * @param listener the listener
+     * @param from     the start of the window, inclusive, not null
+     * @param to       the end of the window, exclusive, not null
+     * @return the dates and times of the alarms in ascending order, with duplicates if
+     *         the listener is triggered more than once at the same date and time
+     * @throws IllegalArgumentException if {@code to} is before {@code from}, or if there
+     *         are more than {@link #MAX_ALARMS} alarms in the window
+     */
+    public List<LocalDateTime> alarms(AlarmClockListener listener, LocalDateTime from,
+            LocalDateTime to) {
+        validate(from, to);
+        long sequence = registry.sequenceOf(listener);
+        if (sequence == 0) {
+            return Collections.emptyList();
+        }
+        AlarmIndex index = registry.index();
+        long count = index.count(sequence, from, to);
+        if (count > MAX_ALARMS) {
+            throw new IllegalArgumentException("Too many alarms in the window: " + count);
+        }
+        return index.alarms(sequence, from, to);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[size=" + size() + ", next="
+                + next().map(String::valueOf).orElse("none") + "]";
+    }
+
+    private static void validate(LocalDateTime from, LocalDateTime to) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("to cannot be before from.");
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.Year;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * A calendar of business days, i.e. days that are neither on a weekend nor a holiday, for
+ * advancing fixed clocks by business days. <br>
+ * Instances are immutable and thread-safe.
+ *
+ * @implNote The business days of each year are kept in a bitmap that is computed when the
+ * year is first needed. Advancing counts whole words and years with
+ * {@link Long#bitCount(long)}, so it takes constant time per year spanned.
+ */
+public final class BusinessCalendar {
+
+    private static final int WORDS = 6;
+
+    private final Set<DayOfWeek> weekend;
+    private final Map<Integer, Set<LocalDate>> holidays;
+    private final Map<Integer, YearBitmap> years = new ConcurrentHashMap<>();
+
+    /**
+     * The business days of a year, where bit {@code n} is the day of year {@code n + 1}.
+     */
+    private static final class YearBitmap {
+
+        private final long[] words = new long[WORDS];
+        private final int length;
+        private final int count;
+
+        YearBitmap(int year, Set<DayOfWeek> weekend, Set<LocalDate> holidays) {
+            LocalDate date = LocalDate.ofYearDay(year, 1);
+            length = date.lengthOfYear();
+            int total = 0;
+            for (int i = 0; i < length; i++, date = date.plusDays(1)) {
+                if (!weekend.contains(date.getDayOfWeek()) && !holidays.contains(date)) {
+                    words[i >>> 6] |= 1L << i;
+                    total++;
+                }
+            }
+            count = total;
+        }
+
+        boolean get(int index) {
+            return (words[index >>> 6] & 1L << index) != 0;
+        }
+
+        /**
+         * @return the number of business days at or after the index
+         */
+        int countFrom(int index) {
+            int result = Long.bitCount(words[index >>> 6] & -1L << index);
+            for (int i = (index >>> 6) + 1; i < WORDS; i++) {
+                result += Long.bitCount(words[i]);
+            }
+            return result;
+        }
+
+        /**
+         * @return the number of business days at or before the index
+         */
+        int countTo(int index) {
+            int result = Long.bitCount(words[index >>> 6] & -1L >>> 63 - (index & 63));
+            for (int i = (index >>> 6) - 1; i >= 0; i--) {
+                result += Long.bitCount(words[i]);
+            }
+            return result;
+        }
+
+        /**
+         * @param nth the business day to find, from {@code 1}
+         * @return the index of the nth business day of the year
+         */
+        int select(int nth) {
+            int remaining = nth;
+            for (int i = 0; i < WORDS; i++) {
+                int bits = Long.bitCount(words[i]);
+                if (remaining <= bits) {
+                    long word = words[i];
+                    for (int j = 1; j < remaining; j++) {
+                        word &= word - 1;
+                    }
+                    return (i << 6) + Long.numberOfTrailingZeros(word);
+                }
+                remaining -= bits;
+            }
+            throw new IllegalStateException("Not enough business days: " + nth);
+        }
+    }
+
+    /**
+     * Creates a calendar with Saturdays and Sundays as the weekend.
+     *
+     * @param holidays the holidays, not null
+     */
+    public BusinessCalendar(Collection<LocalDate> holidays) {
+        this(EnumSet.of(DayOfWeek.SATURDAY, DayOfWeek.SUNDAY), holidays);
+    }
+
+    /**
+     * Creates a calendar with the given weekend and holidays.
+     *
+     * @param weekend  the days of the week that are not business days, not null
+     * @param holidays the holidays, not null
+     * @throws IllegalArgumentException if every day of the week is on the weekend
+     */
+    public BusinessCalendar(Set<DayOfWeek> weekend, Collection<LocalDate> holidays) {
+        if (weekend.size() == DayOfWeek.values().length) {
+            throw new IllegalArgumentException("There must be at least one business day.");
+        }
+        this.weekend = Collections.unmodifiableSet(weekend.isEmpty()
+                ? EnumSet.noneOf(DayOfWeek.class) : EnumSet.copyOf(weekend));
+        this.holidays = new HashMap<>(holidays.stream().collect(
+                Collectors.groupingBy(LocalDate::getYear, Collectors.toSet())));
+    }
+
+    /**
+     * @return the days of the week that are not business days
+     */
+    public Set<DayOfWeek> getWeekend() {
+        return weekend;
+    }
+
+    /**
+     * @param date the date to test, not null
+     * @return {@code true} if the date is neither on a weekend nor a holiday
+     */
+    public boolean isBusinessDay(LocalDate date) {
+        return bitmap(date.getYear()).get(date.getDayOfYear() - 1);
+    }
+
+    /**
+     * Advances the date by business days. <br>
+     * A positive {@code businessDays} returns the nth business day after the date, a
+     * negative one the nth business day before it, and zero returns the date itself.
+     *
+     * @param date         the date to start from, not null
+     * @param businessDays the number of business days to advance by
+     * @return the advanced date
+     */
+    public LocalDate plusBusinessDays(LocalDate date, long businessDays) {
+        if (businessDays == 0) {
+            return date;
+        }
+        int year = date.getYear();
+        int index = date.getDayOfYear() - 1;
+        long remaining = Math.abs(businessDays);
+        YearBitmap bitmap = bitmap(year);
+        if (businessDays > 0) {
+            int available = index + 1 < bitmap.length ? bitmap.countFrom(index + 1) : 0;
+            while (remaining > available) {
+                remaining -= available;
+                bitmap = bitmap(++year);
+                available = bitmap.count;
+                index = -1;
+            }
+            return LocalDate.ofYearDay(year,
+                    bitmap.select((index < 0 ? 0 : bitmap.countTo(index)) + (int) remaining)
+                            + 1);
+        }
+        int available = index > 0 ? bitmap.countTo(index - 1) : 0;
+        while (remaining > available) {
+            remaining -= available;
+            bitmap = bitmap(--year);
+            available = bitmap.count;
+        }
+        return LocalDate.ofYearDay(year, bitmap.select(available - (int) remaining + 1) + 1);
+    }
+
+    /**
+     * @param date the date to start from, not null
+     * @return the first business day after the date
+     */
+    public LocalDate nextBusinessDay(LocalDate date) {
+        return plusBusinessDays(date, 1);
+    }
+
+    /**
+     * Advances the clock by business days, keeping its time.
+     *
+     * @param clock        the clock to set, not null
+     * @param businessDays the number of business days to advance by
+     * @param <T>          the type of the clock
+     * @return the clock
+     * @see #plusBusinessDays(LocalDate, long)
+     */
+    public <T extends FixedWallClock> T advance(T clock, long businessDays) {
+        clock.setDate(plusBusinessDays(clock.date(), businessDays));
+        return clock;
+    }
+
+    /**
+     * Sets the clock to the time on the first business day after its date, e.g. "next
+     * business day at 09:00".
+     *
+     * @param clock the clock to set, not null
+     * @param time  the time to set, not null
+     * @param <T>   the type of the clock
+     * @return the clock
+     */
+    public <T extends FixedWallClock> T nextBusinessDayAt(T clock, LocalTime time) {
+        clock.setDateTime(nextBusinessDay(clock.date()).atTime(time));
+        return clock;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[weekend=" + weekend + ", holidays="
+                + holidays.values().stream().mapToInt(Set::size).sum() + "]";
+    }
+
+    private YearBitmap bitmap(int year) {
+        if (year < Year.MIN_VALUE || year > Year.MAX_VALUE) {
+            throw new IllegalArgumentException("Year out of range: " + year);
+        }
+        return years.computeIfAbsent(year, k -> new YearBitmap(k, weekend,
+                holidays.getOrDefault(k, Collections.emptySet())));
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * A {@link FixedWallClock} that is an offset from a parent clock, which is either an
+ * {@link AbstractFixedWallClock} or another {@link ChildClock}. <br>
+ * Setting the parent moves all of its children, without touching them. Setting a child
+ * changes its offset from the parent, so it keeps following the parent afterwards. The
+ * time-zone is that of the parent.
+ *
+ * @implNote A child only stores its offset, and caches its date and time together with the
+ * parent version it was derived from. The parent is read lazily, when the cached version
+ * is stale, so setting the parent is O(1) regardless of the number of children.
+ */
+public final class ChildClock extends Clock implements FixedWallClock {
+
+    private final WallClock parent;
+    private final LongSupplier parentVersion;
+    private final AtomicReference<Duration> offset;
+    private final AtomicLong modifications = new AtomicLong();
+    private volatile Snapshot snapshot;
+
+    /**
+     * The date and time as of a version.
+     */
+    private static final class Snapshot {
+
+        private final long version;
+        private final ZonedDateTime zdt;
+        private final Instant instant;
+
+        Snapshot(long version, ZonedDateTime zdt) {
+            this.version = version;
+            this.zdt = zdt;
+            this.instant = zdt.toInstant();
+        }
+    }
+
+    /**
+     * Creates a child with no offset from the parent.
+     *
+     * @param parent the parent clock, not null
+     */
+    public ChildClock(AbstractFixedWallClock parent) {
+        this(parent, Duration.ZERO);
+    }
+
+    /**
+     * Creates a child with the given offset from the parent.
+     *
+     * @param parent the parent clock, not null
+     * @param offset the offset from the parent, not null
+     */
+    public ChildClock(AbstractFixedWallClock parent, Duration offset) {
+        this(parent, parent::version, offset);
+    }
+
+    /**
+     * Creates a child with the given offset from the parent.
+     *
+     * @param parent the parent clock, not null
+     * @param offset the offset from the parent, not null
+     */
+    public ChildClock(ChildClock parent, Duration offset) {
+        this(parent, parent::version, offset);
+    }
+
+    private ChildClock(WallClock parent, LongSupplier parentVersion, Duration offset) {
+        this.parent = Objects.requireNonNull(parent);
+        this.parentVersion = parentVersion;
+        this.offset = new AtomicReference<>(Objects.requireNonNull(offset));
+    }
+
+    /**
+     * @return the current offset from the parent
+     */
+    public Duration getOffset() {
+        return offset.get();
+    }
+
+    @Override
+    public ZonedDateTime zonedDateTime() {
+        return snapshot().zdt;
+    }
+
+    @Override
+    public Instant instant() {
+        return snapshot().instant;
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return parent.getZone();
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return new FixedClock(zonedDateTime().withZoneSameInstant(zone));
+    }
+
+    /**
+     * Sets the date of this clock by changing the offset from the parent, the same day is
+     * treated as no-op.
+     *
+     * @param date the date to set, not null
+     * @return this instance
+     */
+    @Override
+    public ChildClock setDate(LocalDate date) {
+        return date.equals(date()) ? this : update(zdt -> zdt.with(date));
+    }
+
+    /**
+     * Sets the time of this clock by changing the offset from the parent, the same time is
+     * treated as no-op.
+     *
+     * @param time the time to set, not null
+     * @return this instance
+     */
+    @Override
+    public ChildClock setTime(LocalTime time) {
+        return time.equals(time()) ? this : update(zdt -> zdt.with(time));
+    }
+
+    /**
+     * Sets the date and time of this clock by changing the offset from the parent, the
+     * same date and time is treated as no-op.
+     *
+     * @param dateTime the date and time to set, not null
+     * @return this instance
+     */
+    @Override
+    public ChildClock setDateTime(LocalDateTime dateTime) {
+        return dateTime.equals(dateTime()) ? this : update(zdt -> zdt.with(dateTime));
+    }
+
+    /**
+     * Adds the duration to the offset from the parent, zero-length durations are treated
+     * as no-op.
+     *
+     * @param duration the duration to add, not null
+     * @return this instance
+     */
+    @Override
+    public ChildClock offset(Duration duration) {
+        if (!duration.isZero()) {
+            Instant previous = instant();
+            offset.accumulateAndGet(duration, Duration::plus);
+            modifications.incrementAndGet();
+            ClockEvents.mutation(this, previous, previous.plus(duration));
+        }
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "@" + zonedDateTime() + "[offset="
+                + getOffset() + "]";
+    }
+
+    /**
+     * @return a version that changes whenever this or any ancestor is set
+     */
+    long version() {
+        return parentVersion.getAsLong() + modifications.get();
+    }
+
+    private Snapshot snapshot() {
+        long version = version();
+        Snapshot current = snapshot;
+        if (current == null || current.version != version) {
+            current = new Snapshot(version, parent.zonedDateTime().plus(offset.get()));
+            snapshot = current;
+        }
+        return current;
+    }
+
+    private ChildClock update(UnaryOperator<ZonedDateTime> operator) {
+        ZonedDateTime base = parent.zonedDateTime();
+        Instant previous = base.plus(offset.get()).toInstant();
+        Instant target = operator.apply(base.plus(offset.get())).toInstant();
+        offset.set(Duration.between(base.toInstant(), target));
+        modifications.incrementAndGet();
+        ClockEvents.mutation(this, previous, target);
+        return this;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * A change of a {@link FixedWallClock}, from one instant to another, as published by
+ * {@link ClockChangePublisher}.
+ */
+public final class ClockChange {
+
+    private final Instant previous;
+    private final Instant current;
+
+    /**
+     * @param previous the instant before, not null
+     * @param current  the instant after, not null
+     */
+    public ClockChange(Instant previous, Instant current) {
+        this.previous = Objects.requireNonNull(previous);
+        this.current = Objects.requireNonNull(current);
+    }
+
+    /**
+     * @return the instant before
+     */
+    public Instant getPrevious() {
+        return previous;
+    }
+
+    /**
+     * @return the instant after
+     */
+    public Instant getCurrent() {
+        return current;
+    }
+
+    /**
+     * @return the duration between the previous and current instants, negative if the
+     *         clock is set back
+     */
+    public Duration getJump() {
+        return Duration.between(previous, current);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o == this || (o instanceof ClockChange
+                && previous.equals(((ClockChange) o).previous)
+                && current.equals(((ClockChange) o).current));
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(previous, current);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[" + previous + " -> " + current + "]";
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import java.time.Instant;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Publishes every change of an {@link AbstractFixedWallClock} to subscribers, obtained from
+ * {@link AbstractFixedWallClock#changes()}. <br>
+ * The {@link Subscriber} and {@link Subscription} interfaces follow the contract of the
+ * Reactive Streams {@code Flow} interfaces of Java 9, with which this remains compatible
+ * on Java 8. Each subscriber only receives as many changes as it requests. When it lags
+ * behind, the changes it has yet to receive are coalesced into one, from the earliest
+ * previous instant to the latest current instant, so it only ever sees the latest state
+ * and nothing is buffered.
+ *
+ * @implNote Setting the clock never blocks: it merges the change into a pending slot per
+ * subscriber with a compare-and-set, and schedules delivery on an {@link Executor} at most
+ * once per subscriber at a time. Signals to each subscriber are serialized.
+ */
+public final class ClockChangePublisher implements AutoCloseable {
+
+    /**
+     * Receives changes from a {@link ClockChangePublisher}, in the same way as
+     * {@code java.util.concurrent.Flow.Subscriber}.
+     */
+    public interface Subscriber {
+
+        /**
+         * Called before any other method, with the subscription to request changes from.
+         *
+         * @param subscription the subscription
+         */
+        void onSubscribe(Subscription subscription);
+
+        /**
+         * Called with the next change, at most as many times as requested.
+         *
+         * @param change the change, possibly coalesced from several changes
+         */
+        void onNext(ClockChange change);
+
+        /**
+         * Called when the subscription fails, e.g. when a non-positive number of changes
+         * is requested. No other method is called afterwards.
+         *
+         * @param throwable the failure
+         */
+        void onError(Throwable throwable);
+
+        /**
+         * Called when the publisher is closed. No other method is called afterwards.
+         */
+        void onComplete();
+    }
+
+    /**
+     * The link between a {@link ClockChangePublisher} and a {@link Subscriber}, in the same
+     * way as {@code java.util.concurrent.Flow.Subscription}.
+     */
+    public interface Subscription {
+
+        /**
+         * Adds to the number of changes to receive, {@link Long#MAX_VALUE} being
+         * unbounded.
+         *
+         * @param n the number of changes, positive, else the subscriber receives an
+         *          {@link IllegalArgumentException} through {@link Subscriber#onError}
+         */
+        void request(long n);
+
+        /**
+         * Stops receiving changes, eventually.
+         */
+        void cancel();
+    }
+
+    /**
+     * The executor to deliver changes on when the common {@link ForkJoinPool} has a single
+     * thread, created on first use. Its one daemon thread exits when idle.
+     */
+    private static final class Fallback {
+
+        private static final Executor EXECUTOR = create();
+
+        private static Executor create() {
+            ThreadPoolExecutor result = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), runnable -> {
+                        Thread thread = new Thread(runnable, "wallclock-change-publisher");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            result.allowCoreThreadTimeOut(true);
+            return result;
+        }
+    }
+
+    private final Executor executor;
+    private final CopyOnWriteArrayList<ChangeSubscription> subscriptions =
+            new CopyOnWriteArrayList<>();
+    private volatile boolean closed;
+
+    /**
+     * Creates an instance that delivers changes asynchronously, on the common
+     * {@link ForkJoinPool} if it has more than one thread, else on a single daemon thread
+     * shared by all instances.
+     */
+    ClockChangePublisher() {
+        this(ForkJoinPool.getCommonPoolParallelism() > 1 ? ForkJoinPool.commonPool()
+                : Fallback.EXECUTOR);
+    }
+
+    /**
+     * @param executor the executor to deliver changes on, not null
+     */
+    ClockChangePublisher(Executor executor) {
+        this.executor = Objects.requireNonNull(executor);
+    }
+
+    /**
+     * Subscribes to changes after this call. {@link Subscriber#onSubscribe(Subscription)}
+     * is called asynchronously.
+     *
+     * @param subscriber the subscriber, not null
+     */
+    public void subscribe(Subscriber subscriber) {
+        ChangeSubscription subscription =
+                new ChangeSubscription(Objects.requireNonNull(subscriber));
+        subscriptions.add(subscription);
+        if (closed) {
+            subscription.done = true;
+        }
+        subscription.signal();
+    }
+
+    /**
+     * @return the number of current subscribers
+     */
+    public int subscribers() {
+        return subscriptions.size();
+    }
+
+    /**
+     * @return {@code true} if this is closed
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Completes all subscribers once they have received their pending change, if any.
+     * Later changes of the clock are published by a new instance from
+     * {@link AbstractFixedWallClock#changes()}.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (ChangeSubscription subscription : subscriptions) {
+            subscription.done = true;
+            subscription.signal();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[subscribers=" + subscribers() + ", closed="
+                + closed + "]";
+    }
+
+    /**
+     * @param previous the instant before
+     * @param current  the instant after
+     */
+    void publish(Instant previous, Instant current) {
+        if (closed) {
+            return;
+        }
+        for (ChangeSubscription subscription : subscriptions) {
+            subscription.offer(previous, current);
+        }
+    }
+
+    private final class ChangeSubscription implements Subscription {
+
+        private final Subscriber subscriber;
+        private final AtomicReference<ClockChange> pending = new AtomicReference<>();
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger work = new AtomicInteger();
+        private volatile Throwable error;
+        private volatile boolean done;
+        private volatile boolean cancelled;
+        private boolean subscribed;
+
+        ChangeSubscription(Subscriber subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("n must be positive: " + n);
+            } else {
+                long current;
+                long next;
+                do {
+                    current = demand.get();
+                    next = current + n < 0 ? Long.MAX_VALUE : current + n;
+                } while (!demand.compareAndSet(current, next));
+            }
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+        }
+
+        void offer(Instant previous, Instant current) {
+            ClockChange before;
+            ClockChange after;
+            do {
+                before = pending.get();
+                after = new ClockChange(before == null ? previous : before.getPrevious(),
+                        current);
+            } while (!pending.compareAndSet(before, after));
+            signal();
+        }
+
+        void signal() {
+            if (work.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    cancel();
+                }
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            do {
+                if (!subscribed) {
+                    subscribed = true;
+                    deliver(() -> subscriber.onSubscribe(this));
+                }
+                while (!cancelled) {
+                    Throwable failure = error;
+                    if (failure != null) {
+                        cancel();
+                        deliver(() -> subscriber.onError(failure));
+                        break;
+                    }
+                    boolean completing = done;
+                    ClockChange next = demand.get() > 0 ? pending.getAndSet(null) : null;
+                    if (next == null) {
+                        if (completing && pending.get() == null) {
+                            cancel();
+                            deliver(subscriber::onComplete);
+                        }
+                        break;
+                    }
+                    if (demand.get() != Long.MAX_VALUE) {
+                        demand.decrementAndGet();
+                    }
+                    deliver(() -> subscriber.onNext(next));
+                }
+                missed = work.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * Subscribers must not throw, but if they do, they are cancelled.
+         */
+        private void deliver(Runnable signal) {
+            try {
+                signal.run();
+            } catch (RuntimeException e) {
+                cancel();
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import java.time.Clock;
+import java.time.Instant;
+
+/**
+ * The entry point to the Java Flight Recorder events of clocks, which does nothing when
+ * the {@code jdk.jfr} API is not available, e.g. on Oracle JDK 8, OpenJDK 8 before 8u262,
+ * or a runtime image linked without it. <br>
+ * The API is looked up once, when this class is initialized. Only then are
+ * {@link ClockMutationEvent} and {@link AlarmDispatchEvent} loaded, so no other class
+ * links against {@code jdk.jfr}.
+ */
+final class ClockEvents {
+
+    private static final boolean AVAILABLE = lookUp();
+
+    private ClockEvents() {
+        // empty
+    }
+
+    /**
+     * @return {@code true} if Java Flight Recorder events can be recorded
+     */
+    static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    /**
+     * Commits a {@link ClockMutationEvent} if it is enabled.
+     *
+     * @param clock the clock that is set
+     * @param oldValue the instant before
+     * @param newValue the instant after
+     */
+    static void mutation(Clock clock, Instant oldValue, Instant newValue) {
+        if (AVAILABLE && ClockMutationEvent.isTypeEnabled()) {
+            ClockMutationEvent.commit(clock.getClass(), saturatedMillis(oldValue),
+                    saturatedMillis(newValue), saturatedNanos(oldValue, newValue));
+        }
+    }
+
+    /**
+     * @return {@code true} if {@link AlarmDispatchEvent}s are enabled
+     */
+    static boolean isDispatchEnabled() {
+        return AVAILABLE && AlarmDispatchEvent.isTypeEnabled();
+    }
+
+    /**
+     * @return a started {@link AlarmDispatchEvent}, only if
+     *         {@link #isDispatchEnabled()}
+     */
+    static Object beginDispatch() {
+        return AlarmDispatchEvent.start();
+    }
+
+    /**
+     * Ends an event from {@link #beginDispatch()}, and commits it if it exceeds the
+     * threshold.
+     *
+     * @param event the event
+     * @param listener the listener dispatched to
+     * @param instant the instant dispatched
+     * @param evaluated the number of matches evaluated
+     * @param fired the number of times the listener is triggered
+     */
+    static void endDispatch(Object event, AlarmClockListener listener, Instant instant,
+            int evaluated, int fired) {
+        AlarmDispatchEvent.end(event, listener.getClass(), saturatedMillis(instant),
+                evaluated, fired);
+    }
+
+    /**
+     * @return the epoch milliseconds of the instant, saturated to the range of a
+     *         {@code long} instead of overflowing
+     */
+    static long saturatedMillis(Instant instant) {
+        long seconds = instant.getEpochSecond();
+        if (seconds >= Long.MAX_VALUE / 1000) {
+            return Long.MAX_VALUE;
+        }
+        if (seconds < Long.MIN_VALUE / 1000) {
+            return Long.MIN_VALUE;
+        }
+        return seconds * 1000 + instant.getNano() / 1_000_000;
+    }
+
+    /**
+     * @return the nanoseconds between the instants, saturated to the range of a
+     *         {@code long} instead of overflowing
+     */
+    static long saturatedNanos(Instant from, Instant to) {
+        long seconds = to.getEpochSecond() - from.getEpochSecond();
+        if (Math.abs(seconds) >= Long.MAX_VALUE / 1_000_000_000L) {
+            return seconds > 0 ? Long.MAX_VALUE : Long.MIN_VALUE;
+        }
+        return seconds * 1_000_000_000L + to.getNano() - from.getNano();
+    }
+
+    /**
+     * @return {@code true} if the API is found and the event classes are initialized
+     */
+    private static boolean lookUp() {
+        try {
+            Class.forName("jdk.jfr.Event", false, ClockEvents.class.getClassLoader());
+            ClockMutationEvent.isTypeEnabled();
+            AlarmDispatchEvent.isTypeEnabled();
+            return true;
+        } catch (ClassNotFoundException | LinkageError | RuntimeException e) {
+            return false;
+        }
+    }
+}
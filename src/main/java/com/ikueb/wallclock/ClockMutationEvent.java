@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+import jdk.jfr.Timestamp;
+
+/**
+ * A Java Flight Recorder event for every change to a {@link FixedWallClock}. <br>
+ * The stack trace identifies the mutating operation, e.g. {@code offset} or
+ * {@code setDateTime}. Instants beyond the range of epoch milliseconds are saturated.
+ */
+@Name("com.ikueb.wallclock.ClockMutation")
+@Label("Clock Mutation")
+@Category("Wallclock")
+@Description("A fixed clock is set to a different date and/or time")
+@StackTrace
+final class ClockMutationEvent extends Event {
+
+    static final EventType TYPE = EventType.getEventType(ClockMutationEvent.class);
+
+    @Label("Clock Class")
+    Class<?> clockClass;
+
+    @Label("Old Instant")
+    @Timestamp(Timestamp.MILLISECONDS_SINCE_EPOCH)
+    long oldInstant;
+
+    @Label("New Instant")
+    @Timestamp(Timestamp.MILLISECONDS_SINCE_EPOCH)
+    long newInstant;
+
+    @Label("Jump")
+    @Description("The difference between the new and old instants")
+    @Timespan(Timespan.NANOSECONDS)
+    long jump;
+
+    /**
+     * @return {@code true} if this event type is enabled in a recording
+     */
+    static boolean isTypeEnabled() {
+        return TYPE.isEnabled();
+    }
+
+    /**
+     * Commits an event, only via {@link ClockEvents#mutation}.
+     *
+     * @param clockClass the class of the clock that is set
+     * @param oldInstant the epoch milliseconds before
+     * @param newInstant the epoch milliseconds after
+     * @param jump the nanoseconds between them
+     */
+    static void commit(Class<?> clockClass, long oldInstant, long newInstant, long jump) {
+        ClockMutationEvent event = new ClockMutationEvent();
+        if (event.shouldCommit()) {
+            event.clockClass = clockClass;
+            event.oldInstant = oldInstant;
+            event.newInstant = newInstant;
+            event.jump = jump;
+            event.commit();
+        }
+    }
+}
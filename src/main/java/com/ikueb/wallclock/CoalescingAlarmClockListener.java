@@ -0,0 +1,141 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import java.time.ZonedDateTime;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An {@link AlarmClockListener} that coalesces triggers which arrive faster than they are
+ * handled, e.g. when replaying thousands of {@link FixedAlarmClock#setDateTime} calls per
+ * second. <br>
+ * Triggers are posted to a mailbox, and handled on an {@link Executor}. While a
+ * {@link Callback} is handling a trigger, further triggers are merged, so that it is next
+ * called once with the latest date and time, and the number of triggers missed in
+ * between. Slow callbacks therefore never build up a backlog of triggers. Register and
+ * snooze this instance, rather than the callback, with the clock. If the executor rejects
+ * a drain, the rejection is reported to the uncaught exception handler of the thread
+ * setting the clock, so that the clock's other listeners are still triggered, and the
+ * trigger stays pending, to be handled with the next trigger that is accepted.
+ *
+ * @implNote The mailbox is a single atomic reference to an immutable pending trigger,
+ * which setting the clock merges into with a compare-and-set. A drain of the mailbox is
+ * scheduled on the executor at most once at a time.
+ */
+public final class CoalescingAlarmClockListener implements AlarmClockListener {
+
+    /**
+     * Handles coalesced triggers.
+     */
+    @FunctionalInterface
+    public interface Callback {
+
+        /**
+         * Callback when the alarm is triggered, at least once since the previous call.
+         *
+         * @param zdt    the {@link ZonedDateTime} at the latest triggered time
+         * @param missed the number of earlier triggers merged into this one
+         */
+        void alarmTriggered(ZonedDateTime zdt, long missed);
+    }
+
+    private static final class Pending {
+
+        private final ZonedDateTime zdt;
+        private final long triggers;
+
+        Pending(ZonedDateTime zdt, long triggers) {
+            this.zdt = zdt;
+            this.triggers = triggers;
+        }
+    }
+
+    private final Callback callback;
+    private final Executor executor;
+    private final AtomicReference<Pending> mailbox = new AtomicReference<>();
+    private final AtomicInteger work = new AtomicInteger();
+    private final LongAdder missed = new LongAdder();
+
+    /**
+     * @param callback the callback for coalesced triggers, not null
+     * @param executor the executor to call back on, not null
+     */
+    public CoalescingAlarmClockListener(Callback callback, Executor executor) {
+        this.callback = Objects.requireNonNull(callback);
+        this.executor = Objects.requireNonNull(executor);
+    }
+
+    @Override
+    public void alarmTriggered(ZonedDateTime zdt) {
+        Pending before;
+        Pending after;
+        do {
+            before = mailbox.get();
+            after = new Pending(zdt, before == null ? 1 : before.triggers + 1);
+        } while (!mailbox.compareAndSet(before, after));
+        if (work.getAndIncrement() == 0) {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // no drain is running, so the next trigger can schedule one
+                work.set(0);
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if a trigger is waiting to be handled
+     */
+    public boolean isPending() {
+        return mailbox.get() != null;
+    }
+
+    /**
+     * @return the total number of triggers merged into later ones
+     */
+    public long missed() {
+        return missed.sum();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[" + callback + ", missed=" + missed() + "]";
+    }
+
+    private void drain() {
+        int remaining = 1;
+        do {
+            Pending pending = mailbox.getAndSet(null);
+            if (pending != null) {
+                missed.add(pending.triggers - 1);
+                try {
+                    callback.alarmTriggered(pending.zdt, pending.triggers - 1);
+                } catch (RuntimeException e) {
+                    Thread thread = Thread.currentThread();
+                    thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+                }
+            }
+            remaining = work.addAndGet(-remaining);
+        } while (remaining != 0);
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Tracks deadlines against a {@link WallClock}, calling back with the values of the
+ * deadlines that expire, in batches. <br>
+ * Deadlines expire when {@link #expire()} is called, either directly, e.g. by tests right
+ * after setting a {@link FixedClock}, or by the single driver thread started with
+ * {@link #start(Duration)}, e.g. with a {@link TickingClock}. The callback is run by the
+ * thread that expires the deadlines, outside of any lock. An exception thrown by the
+ * callback on the driver thread is reported to its
+ * {@link Thread.UncaughtExceptionHandler}, and the driver thread carries on.
+ *
+ * @implNote Deadlines are scheduled on a {@link TimingWheel}, so registering and
+ * cancelling are O(1), and expiring visits only the buckets passed plus the deadlines in
+ * them. The wheel ticks in whole milliseconds, so deadlines are scheduled at the
+ * millisecond they fall in, rounded up, and never expire early.
+ *
+ * @param <T> the type of the values
+ */
+public final class DeadlineTracker<T> implements Closeable {
+
+    private final WallClock clock;
+    private final Consumer<? super List<T>> callback;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final TimingWheel<Deadline<T>> wheel;
+    private volatile Thread driver;
+
+    /**
+     * A registered deadline.
+     *
+     * @param <T> the type of the value
+     */
+    public static final class Deadline<T> extends TimingWheel.Node {
+
+        private final DeadlineTracker<T> tracker;
+        private final T value;
+        private final Instant expiresAt;
+
+        private Deadline(DeadlineTracker<T> tracker, T value, Instant expiresAt) {
+            this.tracker = tracker;
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * @return the value
+         */
+        public T getValue() {
+            return value;
+        }
+
+        /**
+         * @return the instant the deadline expires at
+         */
+        public Instant expiresAt() {
+            return expiresAt;
+        }
+
+        /**
+         * @return {@code true} if neither expired nor cancelled
+         */
+        public boolean isPending() {
+            tracker.lock.lock();
+            try {
+                return isScheduled();
+            } finally {
+                tracker.lock.unlock();
+            }
+        }
+
+        /**
+         * Cancels the deadline in O(1).
+         *
+         * @return {@code true} if it was neither expired nor cancelled
+         */
+        public boolean cancel() {
+            tracker.lock.lock();
+            try {
+                return tracker.wheel.cancel(this);
+            } finally {
+                tracker.lock.unlock();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return getClass().getSimpleName() + "[" + value + " at " + expiresAt() + "]";
+        }
+    }
+
+    /**
+     * @param clock    the clock to expire deadlines by, not null
+     * @param callback the callback for the values of each batch of expired deadlines, not
+     *                 null
+     */
+    public DeadlineTracker(WallClock clock, Consumer<? super List<T>> callback) {
+        this.clock = Objects.requireNonNull(clock);
+        this.callback = Objects.requireNonNull(callback);
+        this.wheel = new TimingWheel<>(clock.millis());
+    }
+
+    /**
+     * @param value   the value, not null
+     * @param timeout the duration from the current instant to expire after, not null
+     * @return the deadline
+     */
+    public Deadline<T> register(T value, Duration timeout) {
+        return register(value, clock.instant().plus(timeout));
+    }
+
+    /**
+     * Registers a deadline, which expires at the next {@link #expire()} if it is already
+     * due.
+     *
+     * @param value    the value, not null
+     * @param deadline the instant to expire at, not null
+     * @return the deadline
+     */
+    public Deadline<T> register(T value, Instant deadline) {
+        Deadline<T> result = new Deadline<>(this, Objects.requireNonNull(value), deadline);
+        long millis = ceilMillis(deadline);
+        lock.lock();
+        try {
+            wheel.schedule(result, millis);
+        } finally {
+            lock.unlock();
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of pending deadlines
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return wheel.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Expires the deadlines that are due, and calls back with their values if there are
+     * any.
+     *
+     * @return the number of expired deadlines
+     */
+    public int expire() {
+        List<T> expired;
+        lock.lock();
+        try {
+            List<T> batch = new ArrayList<>();
+            wheel.advance(clock.millis(), deadline -> batch.add(deadline.value));
+            expired = batch;
+        } finally {
+            lock.unlock();
+        }
+        if (!expired.isEmpty()) {
+            callback.accept(Collections.unmodifiableList(expired));
+        }
+        return expired.size();
+    }
+
+    /**
+     * Starts the driver thread, which calls {@link #expire()} at every interval until
+     * {@link #close()}.
+     *
+     * @param interval the interval, positive
+     * @return this instance
+     * @throws IllegalStateException if already started
+     */
+    public synchronized DeadlineTracker<T> start(Duration interval) {
+        if (interval.isNegative() || interval.isZero()) {
+            throw new IllegalArgumentException("interval must be positive.");
+        }
+        if (driver != null) {
+            throw new IllegalStateException("Already started.");
+        }
+        long nanos = interval.toNanos();
+        Thread thread = new Thread(() -> {
+            Thread current = Thread.currentThread();
+            while (driver == current) {
+                try {
+                    expire();
+                } catch (RuntimeException e) {
+                    current.getUncaughtExceptionHandler().uncaughtException(current, e);
+                }
+                LockSupport.parkNanos(this, nanos);
+            }
+        }, "wallclock-deadline-tracker");
+        thread.setDaemon(true);
+        driver = thread;
+        thread.start();
+        return this;
+    }
+
+    /**
+     * Stops the driver thread, if started. Pending deadlines are kept.
+     */
+    @Override
+    public synchronized void close() {
+        Thread thread = driver;
+        driver = null;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[pending=" + size() + "]";
+    }
+
+    /**
+     * @return the epoch milliseconds the instant falls in, rounded up
+     */
+    private static long ceilMillis(Instant instant) {
+        long millis = instant.toEpochMilli();
+        return instant.getNano() % 1_000_000 == 0 ? millis : millis + 1;
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A concurrent cache whose entries expire a fixed duration after they are written, as
+ * told by a {@link WallClock}. <br>
+ * With a {@link FixedClock}, entries expire only when the clock is set, so tests can
+ * expire any number of entries with a single {@link FixedClock#offset(Duration)}. Once
+ * the maximum size is exceeded, the entries written the earliest are evicted.
+ *
+ * @implNote Entries are scheduled on a {@link TimingWheel}, which is advanced whenever the
+ * clock is seen to have moved, so expiry never scans the whole cache. As the wheel ticks in
+ * whole milliseconds, entries are scheduled at the millisecond their exact deadline falls
+ * in, and reads also compare that deadline with {@link WallClock#instant()}, so an expired
+ * entry is never returned. Reads are lock-free while the clock stays put, and writes are
+ * serialized.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public final class ExpiringCache<K, V> {
+
+    private final WallClock clock;
+    private final Duration ttl;
+    private final int maximumSize;
+    private final ConcurrentHashMap<K, Entry<K, V>> map = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final TimingWheel<Entry<K, V>> wheel;
+    private final Entry<K, V> writeOrder = new Entry<>(null, null, null);
+    private volatile long time;
+    private long expirations;
+    private long evictions;
+
+    /**
+     * An entry, linked into the timing wheel and the write order.
+     */
+    private static final class Entry<K, V> extends TimingWheel.Node {
+
+        private final K key;
+        private final V value;
+        private final long expirySecond;
+        private final int expiryNano;
+        private Entry<K, V> before = this;
+        private Entry<K, V> after = this;
+
+        Entry(K key, V value, Instant expiry) {
+            this.key = key;
+            this.value = value;
+            this.expirySecond = expiry == null ? Long.MAX_VALUE : expiry.getEpochSecond();
+            this.expiryNano = expiry == null ? 0 : expiry.getNano();
+        }
+
+        /**
+         * @return {@code true} if the entry expires at or before the instant
+         */
+        boolean isExpiredAt(Instant instant) {
+            long second = instant.getEpochSecond();
+            return second > expirySecond
+                    || second == expirySecond && instant.getNano() >= expiryNano;
+        }
+
+        /**
+         * @return the epoch milliseconds the expiry falls in, rounded up
+         */
+        long expiryMillis() {
+            long millis = Math.multiplyExact(expirySecond, 1000L) + expiryNano / 1_000_000;
+            return expiryNano % 1_000_000 == 0 ? millis : millis + 1;
+        }
+    }
+
+    /**
+     * @param clock       the clock to expire entries by, not null
+     * @param ttl         the duration after writing to expire entries, positive
+     * @param maximumSize the maximum number of entries, positive
+     * @throws IllegalArgumentException if {@code ttl} or {@code maximumSize} is not
+     *             positive
+     */
+    public ExpiringCache(WallClock clock, Duration ttl, int maximumSize) {
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("ttl must be positive.");
+        }
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize must be positive.");
+        }
+        this.clock = Objects.requireNonNull(clock);
+        this.ttl = ttl;
+        this.maximumSize = maximumSize;
+        this.time = clock.millis();
+        this.wheel = new TimingWheel<>(time);
+    }
+
+    /**
+     * @param key the key to look up, not null
+     * @return the value, or {@code null} if absent or expired
+     */
+    public V get(K key) {
+        maintain();
+        Entry<K, V> entry = map.get(key);
+        return entry == null || entry.isExpiredAt(clock.instant()) ? null : entry.value;
+    }
+
+    /**
+     * Puts the value, which expires after the duration of this cache from now.
+     *
+     * @param key   the key, not null
+     * @param value the value, not null
+     * @return the previous value, or {@code null} if absent or expired
+     */
+    public V put(K key, V value) {
+        Objects.requireNonNull(value);
+        lock.lock();
+        try {
+            Instant now = clock.instant();
+            advance(now.toEpochMilli());
+            Entry<K, V> entry = new Entry<>(key, value, now.plus(ttl));
+            Entry<K, V> previous = map.put(key, entry);
+            if (previous != null) {
+                unlink(previous);
+            }
+            wheel.schedule(entry, entry.expiryMillis());
+            entry.before = writeOrder.before;
+            entry.after = writeOrder;
+            writeOrder.before.after = entry;
+            writeOrder.before = entry;
+            while (map.size() > maximumSize) {
+                Entry<K, V> eldest = writeOrder.after;
+                map.remove(eldest.key, eldest);
+                unlink(eldest);
+                evictions++;
+            }
+            return previous == null || previous.isExpiredAt(now) ? null : previous.value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param key the key to remove, not null
+     * @return the removed value, or {@code null} if absent or expired
+     */
+    public V remove(K key) {
+        lock.lock();
+        try {
+            advance(clock.millis());
+            Entry<K, V> entry = map.remove(key);
+            if (entry == null) {
+                return null;
+            }
+            unlink(entry);
+            return entry.isExpiredAt(clock.instant()) ? null : entry.value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of entries that are not expired
+     */
+    public int size() {
+        maintain();
+        return map.size();
+    }
+
+    /**
+     * Removes the expired entries, which also happens as part of the other operations.
+     */
+    public void cleanUp() {
+        lock.lock();
+        try {
+            advance(clock.millis());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of entries removed as they expired
+     */
+    public long expirations() {
+        lock.lock();
+        try {
+            return expirations;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of entries removed as the maximum size was exceeded
+     */
+    public long evictions() {
+        lock.lock();
+        try {
+            return evictions;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[size=" + size() + ", ttl=" + ttl + "]";
+    }
+
+    private void maintain() {
+        if (clock.millis() != time) {
+            cleanUp();
+        }
+    }
+
+    /**
+     * @param now the current epoch milliseconds
+     */
+    private void advance(long now) {
+        if (now != time) {
+            expirations += wheel.advance(now, entry -> {
+                map.remove(entry.key, entry);
+                entry.before.after = entry.after;
+                entry.after.before = entry.before;
+            });
+            time = now;
+        }
+    }
+
+    private void unlink(Entry<K, V> entry) {
+        wheel.cancel(entry);
+        entry.before.after = entry.after;
+        entry.after.before = entry.before;
+    }
+}
@@ -26,11 +26,13 @@ import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.temporal.Temporal;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A mutable {@link WallClock} implementation that provides a fixed instant. <br>
- * Both dates and times are settable.
+ * Both dates and times are settable. Listeners are triggered on the thread setting the
+ * clock, in a deterministic order: by descending {@link #prioritize priority}, then in
+ * the order they are registered. Listeners can be {@link #weaken held weakly}, so that
+ * short-lived listeners that are never snoozed do not accumulate.
  *
  * @see AbstractFixedWallClock
  */
@@ -39,7 +41,38 @@ public final class FixedAlarmClock extends AbstractFixedWallClock
 
     private static final long serialVersionUID = 1L;
 
-    private final transient ConcurrentHashMap<AlarmClockListener, Set<Temporal>> listeners = new ConcurrentHashMap<>();
+    private final transient AlarmRegistry listeners = new AlarmRegistry();
+    private transient volatile AlarmClockMetrics metrics;
+
+    /**
+     * A checkpoint of a {@link FixedAlarmClock}, i.e. its date and time and its alarm
+     * registrations, obtained from {@link FixedAlarmClock#checkpoint()}.
+     */
+    public static final class Checkpoint {
+
+        private final FixedAlarmClock clock;
+        private final ZonedDateTime zdt;
+        private final AlarmRegistry.State state;
+
+        private Checkpoint(FixedAlarmClock clock, ZonedDateTime zdt,
+                AlarmRegistry.State state) {
+            this.clock = clock;
+            this.zdt = zdt;
+            this.state = state;
+        }
+
+        /**
+         * @return the date and time of the clock at the checkpoint
+         */
+        public ZonedDateTime zonedDateTime() {
+            return zdt;
+        }
+
+        @Override
+        public String toString() {
+            return getClass().getSimpleName() + "@" + zdt;
+        }
+    }
 
     /**
      * Creates an instance based on the current UTC date and time.
@@ -216,62 +249,248 @@ public final class FixedAlarmClock extends AbstractFixedWallClock
         return super.hashCode();
     }
 
+    /**
+     * Enables instrumentation of this clock, if not already enabled.
+     *
+     * @return the metrics of this clock
+     */
+    public synchronized AlarmClockMetrics instrument() {
+        if (metrics == null) {
+            metrics = new AlarmClockMetrics(this);
+        }
+        return metrics;
+    }
+
+    /**
+     * Disables instrumentation of this clock, unregistering its metrics from JMX if
+     * required.
+     */
+    public synchronized void uninstrument() {
+        if (metrics != null) {
+            metrics.unregisterMBean();
+            metrics = null;
+        }
+    }
+
+    /**
+     * @return the metrics of this clock, if instrumentation is enabled
+     */
+    public Optional<AlarmClockMetrics> metrics() {
+        return Optional.ofNullable(metrics);
+    }
+
     @Override
     void set(ZonedDateTime source) {
         super.set(source);
-        listeners.forEach(1, (listener, times) -> {
-            if (times.isEmpty()) {
-                listener.alarmTriggered(source);
-                return;
+        AlarmClockMetrics current = metrics;
+        if (current != null) {
+            current.recordSet();
+        }
+        listeners.purge();
+        if (listeners.isEmpty()) {
+            return;
+        }
+        List<Temporal> temporals = Arrays.asList(source.toLocalDate(),
+                source.toLocalTime(), source.toLocalDateTime());
+        boolean recording = ClockEvents.isDispatchEnabled();
+        if (current == null && !recording) {
+            listeners.forEach((listener, registration) -> dispatch(listener, registration,
+                    source, temporals));
+            return;
+        }
+        listeners.forEach((listener, registration) -> {
+            Object event = recording ? ClockEvents.beginDispatch() : null;
+            long start = System.nanoTime();
+            int fired = dispatch(listener, registration, source, temporals);
+            int evaluated = registration.isEveryUpdate() ? 1 : temporals.size();
+            if (current != null) {
+                current.recordDispatch(registration.isWeak() ? null : listener, evaluated,
+                        fired, System.nanoTime() - start);
+            }
+            if (event != null) {
+                ClockEvents.endDispatch(event, listener, source.toInstant(), evaluated, fired);
             }
-            List<Temporal> temporals = Arrays.asList(source.toLocalDate(),
-                    source.toLocalTime(), source.toLocalDateTime());
-            times.parallelStream()
-                    .filter(temporals::contains)
-                    .forEach(v -> listener.alarmTriggered(source));
         });
     }
 
+    /**
+     * @return the number of times the listener is triggered
+     */
+    private static int dispatch(AlarmClockListener listener,
+            AlarmRegistry.Registration registration, ZonedDateTime source,
+            List<Temporal> temporals) {
+        if (registration.isEveryUpdate()) {
+            listener.alarmTriggered(source);
+            return 1;
+        }
+        int fired = 0;
+        for (Temporal temporal : temporals) {
+            if (registration.isAlarmedAt(temporal)) {
+                listener.alarmTriggered(source);
+                fired++;
+            }
+        }
+        return fired;
+    }
+
+    /**
+     * @return the number of alarm registrations per listener, in dispatch order
+     */
+    Map<AlarmClockListener, Integer> registrations() {
+        return listeners.registrations();
+    }
+
+    /**
+     * Sets the priority of a registered listener, which is {@code 0} when registered.
+     * Listeners with a higher priority are triggered first, and listeners with the same
+     * priority keep their registration order.
+     *
+     * @param listener the listener to prioritize
+     * @param priority the priority
+     * @return {@code true} if the listener is registered
+     */
+    public boolean prioritize(AlarmClockListener listener, int priority) {
+        return listeners.prioritize(listener, priority);
+    }
+
+    /**
+     * Takes a checkpoint of the date and time and the alarm registrations of this clock, in
+     * O(1), e.g. to explore different branches of a simulation from it. <br>
+     * Registrations are kept in persistent data structures, so a checkpoint shares them
+     * with this clock instead of copying them. Checkpoints are not atomic with concurrent
+     * changes to this clock.
+     *
+     * @return the checkpoint
+     * @see #restore(Checkpoint)
+     */
+    public Checkpoint checkpoint() {
+        return new Checkpoint(this, zonedDateTime(), listeners.state());
+    }
+
+    /**
+     * Rolls this clock back, or forward, to a checkpoint of it, in O(1). <br>
+     * Restoring the date and time does not trigger any alarm, but is still a change of this
+     * clock for {@link #version()} and {@link #changes()}. Weakly held listeners which are
+     * garbage collected since the checkpoint are unregistered when next dispatched to. If
+     * this clock is {@link #instrument() instrumented}, the latencies of listeners that are
+     * not registered at the checkpoint are also discarded, in O(n).
+     *
+     * @param checkpoint the checkpoint to restore, not null
+     * @return this instance
+     * @throws IllegalArgumentException if the checkpoint is of another clock
+     */
+    public FixedAlarmClock restore(Checkpoint checkpoint) {
+        if (checkpoint.clock != this) {
+            throw new IllegalArgumentException("checkpoint is of another clock.");
+        }
+        listeners.restore(checkpoint.state);
+        AlarmClockMetrics current = metrics;
+        if (current != null) {
+            current.retain(listeners.registrations().keySet());
+        }
+        if (!checkpoint.zdt.equals(zonedDateTime())) {
+            super.set(checkpoint.zdt);
+        }
+        return this;
+    }
+
+    /**
+     * @return the schedule of the alarms registered on this clock
+     */
+    public AlarmSchedule schedule() {
+        return new AlarmSchedule(this, listeners);
+    }
+
+    /**
+     * Holds a registered listener weakly, until it is snoozed completely. Once it is
+     * garbage collected, it is unregistered when this clock is next set or registered
+     * with.
+     *
+     * @param listener the listener to hold weakly
+     * @return {@code true} if the listener is registered
+     * @see #purged()
+     */
+    public boolean weaken(AlarmClockListener listener) {
+        if (!listeners.weaken(listener)) {
+            return false;
+        }
+        forget(listener);
+        return true;
+    }
+
+    /**
+     * @return the number of weakly held listeners unregistered after being garbage
+     *         collected
+     */
+    public long purged() {
+        return listeners.purged();
+    }
+
+    /**
+     * Treats a weakly held listener as garbage collected, for testing.
+     *
+     * @param listener the listener
+     * @return {@code true} if the listener is registered and held weakly
+     */
+    boolean collect(AlarmClockListener listener) {
+        return listeners.collect(listener);
+    }
+
     @Override
     public void alarm(AlarmClockListener listener) {
-        listeners.putIfAbsent(listener, new HashSet<>());
+        listeners.alarm(listener, null);
     }
 
     @Override
     public void alarm(AlarmClockListener listener, LocalDate dateToAlarm) {
-        listeners.computeIfAbsent(listener, k -> new HashSet<>()).add(dateToAlarm);
+        listeners.alarm(listener, dateToAlarm);
     }
 
     @Override
     public void alarm(AlarmClockListener listener, LocalTime timeToAlarm) {
-        listeners.computeIfAbsent(listener, k -> new HashSet<>()).add(timeToAlarm);
+        listeners.alarm(listener, timeToAlarm);
     }
 
     @Override
     public void alarm(AlarmClockListener listener, LocalDateTime dateTimeToAlarm) {
-        listeners.computeIfAbsent(listener, k -> new HashSet<>()).add(dateTimeToAlarm);
+        listeners.alarm(listener, dateTimeToAlarm);
     }
 
     @Override
     public void snooze(AlarmClockListener listener) {
-        listeners.remove(listener);
+        listeners.snooze(listener, null);
+        forget(listener);
     }
 
     @Override
     public void snooze(AlarmClockListener listener, LocalDate dateToSnooze) {
-        listeners.computeIfPresent(listener,
-                (k, v) -> { v.remove(dateToSnooze); return v.isEmpty() ? null : v; });
+        if (listeners.snooze(listener, dateToSnooze)) {
+            forget(listener);
+        }
     }
 
     @Override
     public void snooze(AlarmClockListener listener, LocalTime timeToSnooze) {
-        listeners.computeIfPresent(listener,
-                (k, v) -> { v.remove(timeToSnooze); return v.isEmpty() ? null : v; });
+        if (listeners.snooze(listener, timeToSnooze)) {
+            forget(listener);
+        }
     }
 
     @Override
     public void snooze(AlarmClockListener listener, LocalDateTime dateTimeToSnooze) {
-        listeners.computeIfPresent(listener,
-                (k, v) -> { v.remove(dateTimeToSnooze); return v.isEmpty() ? null : v; });
+        if (listeners.snooze(listener, dateTimeToSnooze)) {
+            forget(listener);
+        }
+    }
+
+    /**
+     * Discards the latencies of a listener that is no longer held strongly, so that the
+     * metrics do not keep it reachable.
+     */
+    private void forget(AlarmClockListener listener) {
+        AlarmClockMetrics current = metrics;
+        if (current != null) {
+            current.forget(listener);
+        }
     }
 }
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAccessor;
+
+/**
+ * A hand-rolled parser for the common ISO-8601 date-time forms, setting a
+ * {@link AbstractFixedWallClock} directly. <br>
+ * The recognized forms are {@code yyyy-MM-ddTHH:mm[:ss[.fffffffff]]}, where {@code T} may
+ * also be a space and the fraction separator may also be a comma, optionally followed by
+ * {@code Z} or an offset in the form {@code +HH}, {@code +HHmm} or {@code +HH:mm} (or
+ * their {@code -} equivalents). Anything else is delegated to
+ * {@link DateTimeFormatter#ISO_DATE_TIME}.
+ * <p>
+ * Local date-times are applied like {@link FixedWallClock#setDateTime(LocalDateTime)},
+ * while date-times with an offset or time-zone are applied as an instant in the clock's own
+ * time-zone. In both cases, setting the clock to its current value is treated as no-op.
+ *
+ * @implNote Compared to {@code clock.setDateTime(LocalDateTime.parse(text))}, this skips
+ * the formatter's intermediate parsing state entirely, and for instants also the
+ * intermediate {@link LocalDateTime}.
+ */
+public final class Iso8601Parser {
+
+    private static final int SECONDS_PER_DAY = 86_400;
+    private static final long DAYS_0000_TO_1970 = 719_528L;
+    private static final int[] FRACTION_SCALE = { 0, 100_000_000, 10_000_000, 1_000_000,
+            100_000, 10_000, 1_000, 100, 10, 1 };
+
+    private Iso8601Parser() {
+        // empty
+    }
+
+    /**
+     * Sets the date and time of the clock from the text.
+     *
+     * @param clock the clock to set, not null
+     * @param text  the text to parse, not null
+     * @param <T>   the type of the clock
+     * @return the clock
+     * @throws DateTimeParseException if {@code text} cannot be parsed
+     */
+    public static <T extends AbstractFixedWallClock> T setDateTime(T clock,
+            CharSequence text) {
+        if (!parse(clock, text, 0, text.length())) {
+            fallback(clock, text);
+        }
+        return clock;
+    }
+
+    /**
+     * Sets the date and time of the clock from the ASCII bytes.
+     *
+     * @param clock  the clock to set, not null
+     * @param ascii  the bytes to parse, not null
+     * @param offset the index of the first byte to parse
+     * @param length the number of bytes to parse
+     * @param <T>    the type of the clock
+     * @return the clock
+     * @throws DateTimeParseException if the bytes cannot be parsed
+     */
+    public static <T extends AbstractFixedWallClock> T setDateTime(T clock, byte[] ascii,
+            int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > ascii.length) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length
+                    + " out of bounds for " + ascii.length + " bytes.");
+        }
+        if (!parse(clock, ascii, offset, offset + length)) {
+            fallback(clock, new String(ascii, offset, length, StandardCharsets.US_ASCII));
+        }
+        return clock;
+    }
+
+    /**
+     * @param source either a {@link CharSequence} or a {@code byte[]}
+     * @return {@code true} if the text is recognized and the clock is set (or already set)
+     */
+    private static boolean parse(AbstractFixedWallClock clock, Object source, int from,
+            int to) {
+        if (to - from < 16 || at(source, from + 4) != '-' || at(source, from + 7) != '-'
+                || !isSeparator(at(source, from + 10)) || at(source, from + 13) != ':') {
+            return false;
+        }
+        int year = digits(source, from, 4);
+        int month = digits(source, from + 5, 2);
+        int day = digits(source, from + 8, 2);
+        int hour = digits(source, from + 11, 2);
+        int minute = digits(source, from + 14, 2);
+        int second = 0;
+        int nano = 0;
+        int i = from + 16;
+        if (i < to && at(source, i) == ':') {
+            second = to - i < 3 ? -1 : digits(source, i + 1, 2);
+            i += 3;
+            if (i < to && (at(source, i) == '.' || at(source, i) == ',')) {
+                int start = ++i;
+                while (i < to && i - start < 9 && isDigit(at(source, i))) {
+                    nano = nano * 10 + at(source, i++) - '0';
+                }
+                if (i == start) {
+                    return false;
+                }
+                nano *= FRACTION_SCALE[i - start];
+            }
+        }
+        if ((year | month | day | hour | minute | second) < 0 || month < 1 || month > 12
+                || day < 1 || day > lengthOfMonth(year, month) || hour > 23 || minute > 59
+                || second > 59) {
+            return false;
+        }
+        if (i == to) {
+            setLocal(clock, year, month, day, hour, minute, second, nano);
+            return true;
+        }
+        int offsetSeconds = offsetSeconds(source, i, to);
+        if (offsetSeconds == Integer.MIN_VALUE) {
+            return false;
+        }
+        long epochSecond = epochDay(year, month, day) * SECONDS_PER_DAY + hour * 3600
+                + minute * 60 + second - offsetSeconds;
+        Instant current = clock.instant();
+        if (current.getEpochSecond() != epochSecond || current.getNano() != nano) {
+            clock.set(ZonedDateTime.ofInstant(Instant.ofEpochSecond(epochSecond, nano),
+                    clock.getZone()));
+        }
+        return true;
+    }
+
+    private static void setLocal(AbstractFixedWallClock clock, int year, int month,
+            int day, int hour, int minute, int second, int nano) {
+        ZonedDateTime current = clock.zonedDateTime();
+        if (current.getYear() != year || current.getMonthValue() != month
+                || current.getDayOfMonth() != day || current.getHour() != hour
+                || current.getMinute() != minute || current.getSecond() != second
+                || current.getNano() != nano) {
+            clock.set(ZonedDateTime.ofLocal(
+                    LocalDateTime.of(year, month, day, hour, minute, second, nano),
+                    current.getZone(), current.getOffset()));
+        }
+    }
+
+    /**
+     * @return the offset in seconds, or {@link Integer#MIN_VALUE} if not recognized
+     */
+    private static int offsetSeconds(Object source, int i, int to) {
+        char c = at(source, i);
+        if ((c == 'Z' || c == 'z') && i + 1 == to) {
+            return 0;
+        }
+        if (c != '+' && c != '-') {
+            return Integer.MIN_VALUE;
+        }
+        int length = to - i - 1;
+        int hours = length >= 2 ? digits(source, i + 1, 2) : -1;
+        int minutes;
+        if (length == 2) {
+            minutes = 0;
+        } else if (length == 4) {
+            minutes = digits(source, i + 3, 2);
+        } else if (length == 5 && at(source, i + 3) == ':') {
+            minutes = digits(source, i + 4, 2);
+        } else {
+            return Integer.MIN_VALUE;
+        }
+        if (hours < 0 || hours > 18 || minutes < 0 || minutes > 59
+                || (hours == 18 && minutes > 0)) {
+            return Integer.MIN_VALUE;
+        }
+        int seconds = hours * 3600 + minutes * 60;
+        return c == '-' ? -seconds : seconds;
+    }
+
+    private static void fallback(AbstractFixedWallClock clock, CharSequence text) {
+        TemporalAccessor parsed = DateTimeFormatter.ISO_DATE_TIME.parseBest(text,
+                ZonedDateTime::from, LocalDateTime::from);
+        if (parsed instanceof ZonedDateTime) {
+            Instant instant = ((ZonedDateTime) parsed).toInstant();
+            if (!instant.equals(clock.instant())) {
+                clock.set(ZonedDateTime.ofInstant(instant, clock.getZone()));
+            }
+        } else {
+            LocalDateTime dateTime = (LocalDateTime) parsed;
+            if (!dateTime.equals(clock.dateTime())) {
+                clock.set(clock.zonedDateTime().with(dateTime));
+            }
+        }
+    }
+
+    private static char at(Object source, int index) {
+        return source instanceof byte[] ? (char) (((byte[]) source)[index] & 0xff)
+                : ((CharSequence) source).charAt(index);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == 'T' || c == 't' || c == ' ';
+    }
+
+    /**
+     * @return the non-negative value of the digits, or {@code -1} if there is a non-digit
+     */
+    private static int digits(Object source, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            char c = at(source, i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            value = value * 10 + c - '0';
+        }
+        return value;
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return isLeapYear(year) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * Same computation as {@link java.time.LocalDate#toEpochDay()}, for years 0 to 9999.
+     */
+    private static long epochDay(int year, int month, int day) {
+        long total = 365L * year + (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+        total += (367 * month - 362) / 12;
+        total += day - 1;
+        if (month > 2) {
+            total -= isLeapYear(year) ? 1 : 2;
+        }
+        return total - DAYS_0000_TO_1970;
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A memory-mapped ring of time readings, used by {@link RecordingClock} and
+ * {@link ReplayingClock}. <br>
+ * The layout is a 32-byte header (magic number, capacity, number of readings written,
+ * number of slots claimed), followed by {@code capacity} records of the epoch nanoseconds
+ * and the thread id of each reading. Once more readings than the capacity are appended,
+ * the oldest ones are overwritten.
+ *
+ * @implNote Appending claims a slot with a single atomic increment and writes it with
+ * absolute puts, which do not modify the state of the shared buffer. Slots are then
+ * completed in the order they are claimed, so that the number of readings written only
+ * ever covers complete records. Appending is therefore blocking rather than lock-free: an
+ * append waits for the appends that claimed earlier slots, and for the append of the
+ * previous reading in its slot, so a preempted writer delays the others. The header is
+ * only updated by {@link #flush()} and {@link #close()}: the number of readings written,
+ * and the number of slots claimed so far, as the records that appends in progress are
+ * overwriting are not replayed.
+ */
+final class Journal implements Closeable {
+
+    private static final long MAGIC = 0x57616c6c636c6b31L;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int COUNT_OFFSET = 16;
+    private static final int CLAIMED_OFFSET = 24;
+    private static final int HEADER = 32;
+    private static final int RECORD = 16;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final long capacity;
+    private final AtomicLong claimed;
+    private final AtomicLong written;
+    private final boolean writable;
+
+    private Journal(FileChannel channel, MappedByteBuffer buffer, long capacity,
+            long written, long claimed, boolean writable) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.claimed = new AtomicLong(Math.max(written, claimed));
+        this.written = new AtomicLong(written);
+        this.writable = writable;
+    }
+
+    /**
+     * @param path     the file to create or truncate
+     * @param capacity the maximum number of readings to keep
+     * @return a new, writable journal
+     * @throws UncheckedIOException if the file cannot be created or mapped
+     */
+    static Journal create(Path path, int capacity) {
+        if (capacity <= 0 || capacity > (Integer.MAX_VALUE - HEADER) / RECORD) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        try {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER + (long) capacity * RECORD);
+            buffer.putLong(MAGIC_OFFSET, MAGIC);
+            buffer.putLong(CAPACITY_OFFSET, capacity);
+            buffer.putLong(COUNT_OFFSET, 0);
+            buffer.putLong(CLAIMED_OFFSET, 0);
+            return new Journal(channel, buffer, capacity, 0, 0, true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param path the file to open
+     * @return a read-only journal
+     * @throws UncheckedIOException if the file cannot be read or mapped
+     * @throws IllegalArgumentException if the file is not a journal
+     */
+    static Journal open(Path path) {
+        try {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            if (channel.size() < HEADER) {
+                channel.close();
+                throw new IllegalArgumentException("Not a journal: " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+            long capacity = buffer.getLong(CAPACITY_OFFSET);
+            if (buffer.getLong(MAGIC_OFFSET) != MAGIC || capacity <= 0
+                    || HEADER + capacity * RECORD > channel.size()) {
+                channel.close();
+                throw new IllegalArgumentException("Not a journal: " + path);
+            }
+            return new Journal(channel, buffer, capacity, buffer.getLong(COUNT_OFFSET),
+                    buffer.getLong(CLAIMED_OFFSET), false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void append(long epochNanos, long threadId) {
+        long index = claimed.getAndIncrement();
+        while (written.get() <= index - capacity) {
+            // the previous reading in the slot is still being written
+            Thread.yield();
+        }
+        int offset = offsetOf(index);
+        buffer.putLong(offset, epochNanos);
+        buffer.putLong(offset + 8, threadId);
+        while (!written.compareAndSet(index, index + 1)) {
+            // complete the slots in the order they are claimed
+            Thread.yield();
+        }
+    }
+
+    /**
+     * @return the index of the oldest reading still in the journal, which excludes those
+     *         that appends in progress at the last flush may be overwriting
+     */
+    long first() {
+        return Math.max(0, claimed.get() - capacity);
+    }
+
+    /**
+     * @return the number of readings ever written
+     */
+    long count() {
+        return written.get();
+    }
+
+    long epochNanosAt(long index) {
+        return buffer.getLong(offsetOf(index));
+    }
+
+    long threadIdAt(long index) {
+        return buffer.getLong(offsetOf(index) + 8);
+    }
+
+    /**
+     * Writes the number of readings written and slots claimed to the header, and forces
+     * the file to storage.
+     */
+    synchronized void flush() {
+        if (writable) {
+            long count = written.get();
+            buffer.putLong(COUNT_OFFSET, count);
+            buffer.putLong(CLAIMED_OFFSET, Math.max(count, claimed.get()));
+            buffer.force();
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            flush();
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private int offsetOf(long index) {
+        return (int) (HEADER + (index % capacity) * RECORD);
+    }
+}
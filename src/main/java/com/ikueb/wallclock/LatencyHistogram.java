@@ -0,0 +1,127 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of non-negative values, e.g. latencies in nanoseconds. <br>
+ * Values are recorded into log-linear buckets in the style of HdrHistogram: values below
+ * 64 are exact, and larger values are tracked with 5 bits of sub-bucket precision, i.e. a
+ * relative error of at most about 3%.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_HALF = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_COUNT = SUB_BUCKET_HALF << 1;
+    private static final int BUCKETS = SUB_BUCKET_COUNT
+            + (63 - SUB_BUCKET_BITS) * SUB_BUCKET_HALF;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a value, negative values are treated as zero.
+     *
+     * @param value the value to record
+     */
+    public void record(long value) {
+        long v = Math.max(0, value);
+        counts.incrementAndGet(indexOf(v));
+        total.incrementAndGet();
+        long current;
+        while (v > (current = max.get()) && !max.compareAndSet(current, v)) {
+            // retry
+        }
+    }
+
+    /**
+     * @return the number of recorded values
+     */
+    public long count() {
+        return total.get();
+    }
+
+    /**
+     * @return the largest recorded value, or {@code 0} if there are none
+     */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * Returns the (upper bound of the bucket of the) value at the given percentile.
+     *
+     * @param percentile the percentile, between {@code 0} and {@code 100}
+     * @return the value at the percentile, or {@code 0} if there are no recorded values
+     * @throws IllegalArgumentException if {@code percentile} is out of range
+     */
+    public long valueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100.");
+        }
+        long target = (long) Math.ceil(percentile / 100 * total.get());
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen > 0 && seen >= target) {
+                return Math.min(highestEquivalentValue(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Resets this histogram. <br>
+     * Values recorded concurrently may or may not be included afterwards.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        total.set(0);
+        max.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[count=" + count() + ", p50="
+                + valueAtPercentile(50) + ", p99=" + valueAtPercentile(99) + ", max="
+                + max() + "]";
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF
+                + (int) (value >>> shift) - SUB_BUCKET_HALF;
+    }
+
+    static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int offset = index - SUB_BUCKET_COUNT;
+        int shift = offset / SUB_BUCKET_HALF + 1;
+        long subBucket = offset % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,365 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * An immutable hash map, where putting and removing return a new map that shares all but
+ * O(log32 n) nodes with this one.
+ *
+ * @implNote This is a hash array mapped trie: each level consumes 5 bits of the hash of a
+ * key, and keeps its non-empty slots compacted in an array indexed by a bitmap. Keys with
+ * equal hashes are kept in collision nodes.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+final class PersistentHashMap<K, V> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(null, 0);
+
+    private static final class Entry<K, V> {
+
+        private final int hash;
+        private final K key;
+        private final V value;
+
+        Entry(int hash, K key, V value) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    private abstract static class Node<K, V> {
+
+        abstract V get(int shift, int hash, Object key);
+
+        abstract Node<K, V> put(int shift, Entry<K, V> entry);
+
+        /**
+         * @return the node without the key, {@code null} if it is empty
+         */
+        abstract Node<K, V> remove(int shift, int hash, Object key);
+
+        abstract void forEach(BiConsumer<? super K, ? super V> action);
+    }
+
+    private static final class BitmapNode<K, V> extends Node<K, V> {
+
+        private final int bitmap;
+        private final Object[] children;
+
+        BitmapNode(int bitmap, Object[] children) {
+            this.bitmap = bitmap;
+            this.children = children;
+        }
+
+        @Override
+        V get(int shift, int hash, Object key) {
+            int bit = bit(shift, hash);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            Object child = children[index(bit)];
+            if (child instanceof Entry) {
+                Entry<K, V> entry = cast(child);
+                return entry.hash == hash && entry.key.equals(key) ? entry.value : null;
+            }
+            return node(child).get(shift + BITS, hash, key);
+        }
+
+        @Override
+        Node<K, V> put(int shift, Entry<K, V> entry) {
+            int bit = bit(shift, entry.hash);
+            int index = index(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] result = new Object[children.length + 1];
+                System.arraycopy(children, 0, result, 0, index);
+                result[index] = entry;
+                System.arraycopy(children, index, result, index + 1, children.length - index);
+                return new BitmapNode<>(bitmap | bit, result);
+            }
+            Object child = children[index];
+            Object replacement;
+            if (child instanceof Entry) {
+                Entry<K, V> existing = cast(child);
+                if (existing.hash == entry.hash && existing.key.equals(entry.key)) {
+                    if (existing.value == entry.value) {
+                        return this;
+                    }
+                    replacement = entry;
+                } else {
+                    replacement = merge(shift + BITS, existing, entry);
+                }
+            } else {
+                Node<K, V> node = node(child);
+                replacement = node.put(shift + BITS, entry);
+                if (replacement == node) {
+                    return this;
+                }
+            }
+            Object[] result = children.clone();
+            result[index] = replacement;
+            return new BitmapNode<>(bitmap, result);
+        }
+
+        @Override
+        Node<K, V> remove(int shift, int hash, Object key) {
+            int bit = bit(shift, hash);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int index = index(bit);
+            Object child = children[index];
+            Object replacement;
+            if (child instanceof Entry) {
+                Entry<?, ?> entry = (Entry<?, ?>) child;
+                if (entry.hash != hash || !entry.key.equals(key)) {
+                    return this;
+                }
+                replacement = null;
+            } else {
+                Node<K, V> node = node(child);
+                replacement = node.remove(shift + BITS, hash, key);
+                if (replacement == node) {
+                    return this;
+                }
+            }
+            if (replacement != null) {
+                Object[] result = children.clone();
+                result[index] = replacement;
+                return new BitmapNode<>(bitmap, result);
+            }
+            if (children.length == 1) {
+                return null;
+            }
+            Object[] result = new Object[children.length - 1];
+            System.arraycopy(children, 0, result, 0, index);
+            System.arraycopy(children, index + 1, result, index, result.length - index);
+            return new BitmapNode<>(bitmap & ~bit, result);
+        }
+
+        @Override
+        void forEach(BiConsumer<? super K, ? super V> action) {
+            for (Object child : children) {
+                if (child instanceof Entry) {
+                    Entry<K, V> entry = cast(child);
+                    action.accept(entry.key, entry.value);
+                } else {
+                    node(child).forEach(action);
+                }
+            }
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @SuppressWarnings("unchecked")
+        private Node<K, V> node(Object child) {
+            return (Node<K, V>) child;
+        }
+    }
+
+    private static final class CollisionNode<K, V> extends Node<K, V> {
+
+        private final int hash;
+        private final Entry<K, V>[] entries;
+
+        CollisionNode(int hash, Entry<K, V>[] entries) {
+            this.hash = hash;
+            this.entries = entries;
+        }
+
+        @Override
+        V get(int shift, int hash, Object key) {
+            int index = indexOf(hash, key);
+            return index < 0 ? null : entries[index].value;
+        }
+
+        @Override
+        Node<K, V> put(int shift, Entry<K, V> entry) {
+            if (entry.hash != hash) {
+                return new BitmapNode<K, V>(bit(shift, hash), new Object[] { this })
+                        .put(shift, entry);
+            }
+            int index = indexOf(entry.hash, entry.key);
+            if (index >= 0 && entries[index].value == entry.value) {
+                return this;
+            }
+            Entry<K, V>[] result;
+            if (index >= 0) {
+                result = entries.clone();
+                result[index] = entry;
+            } else {
+                result = Arrays.copyOf(entries, entries.length + 1);
+                result[entries.length] = entry;
+            }
+            return new CollisionNode<>(hash, result);
+        }
+
+        @Override
+        Node<K, V> remove(int shift, int hash, Object key) {
+            int index = indexOf(hash, key);
+            if (index < 0) {
+                return this;
+            }
+            if (entries.length == 1) {
+                return null;
+            }
+            Entry<K, V>[] result = Arrays.copyOf(entries, entries.length - 1);
+            if (index < result.length) {
+                result[index] = entries[entries.length - 1];
+            }
+            return new CollisionNode<>(this.hash, result);
+        }
+
+        @Override
+        void forEach(BiConsumer<? super K, ? super V> action) {
+            for (Entry<K, V> entry : entries) {
+                action.accept(entry.key, entry.value);
+            }
+        }
+
+        private int indexOf(int hash, Object key) {
+            if (hash == this.hash) {
+                for (int i = 0; i < entries.length; i++) {
+                    if (entries[i].key.equals(key)) {
+                        return i;
+                    }
+                }
+            }
+            return -1;
+        }
+    }
+
+    private final Node<K, V> root;
+    private final int size;
+
+    private PersistentHashMap(Node<K, V> root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * @return an empty map
+     */
+    @SuppressWarnings("unchecked")
+    static <K, V> PersistentHashMap<K, V> empty() {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param key the key, not null
+     * @return the value of the key, or {@code null} if absent
+     */
+    V get(Object key) {
+        return root == null ? null : root.get(0, hash(key), key);
+    }
+
+    /**
+     * @param key   the key, not null
+     * @param value the value, not null
+     * @return a map with the key mapped to the value, or this if it already is
+     */
+    PersistentHashMap<K, V> plus(K key, V value) {
+        Objects.requireNonNull(value);
+        int hash = hash(key);
+        Entry<K, V> entry = new Entry<>(hash, key, value);
+        if (root == null) {
+            return new PersistentHashMap<>(
+                    new BitmapNode<K, V>(bit(0, hash), new Object[] { entry }), 1);
+        }
+        Node<K, V> result = root.put(0, entry);
+        if (result == root) {
+            return this;
+        }
+        return new PersistentHashMap<>(result, root.get(0, hash, key) == null ? size + 1
+                : size);
+    }
+
+    /**
+     * @param key the key, not null
+     * @return a map without the key, or this if it is absent
+     */
+    PersistentHashMap<K, V> minus(Object key) {
+        if (root == null) {
+            return this;
+        }
+        Node<K, V> result = root.remove(0, hash(key), key);
+        return result == root ? this : new PersistentHashMap<>(result, size - 1);
+    }
+
+    /**
+     * @param action the action for each key and value, in no particular order
+     */
+    void forEach(BiConsumer<? super K, ? super V> action) {
+        if (root != null) {
+            root.forEach(action);
+        }
+    }
+
+    private static int hash(Object key) {
+        int hash = key.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int bit(int shift, int hash) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> Entry<K, V> cast(Object entry) {
+        return (Entry<K, V>) entry;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> Entry<K, V>[] entries(int length) {
+        return (Entry<K, V>[]) new Entry<?, ?>[length];
+    }
+
+    private static <K, V> Node<K, V> merge(int shift, Entry<K, V> first, Entry<K, V> second) {
+        if (first.hash == second.hash || shift >= Integer.SIZE) {
+            Entry<K, V>[] entries = entries(2);
+            entries[0] = first;
+            entries[1] = second;
+            return new CollisionNode<>(first.hash, entries);
+        }
+        int firstBit = bit(shift, first.hash);
+        int secondBit = bit(shift, second.hash);
+        if (firstBit == secondBit) {
+            return new BitmapNode<>(firstBit,
+                    new Object[] { merge(shift + BITS, first, second) });
+        }
+        boolean ordered = Integer.compareUnsigned(firstBit, secondBit) < 0;
+        return new BitmapNode<>(firstBit | secondBit, ordered
+                ? new Object[] { first, second } : new Object[] { second, first });
+    }
+}
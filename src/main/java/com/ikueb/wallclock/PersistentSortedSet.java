@@ -0,0 +1,283 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * An immutable sorted set, where adding and removing return a new set that shares all
+ * but O(log n) nodes with this one. <br>
+ * Besides lookups, it supports rank queries, i.e. the number of elements before a given
+ * one, in O(log n), and iterating a range in O(log n + k) for k elements.
+ *
+ * @implNote This is an AVL tree with path copying, where each node also holds the size of
+ * its subtree.
+ *
+ * @param <E> the type of the elements
+ */
+final class PersistentSortedSet<E> {
+
+    private static final class Node<E> {
+
+        private final E element;
+        private final Node<E> left;
+        private final Node<E> right;
+        private final int height;
+        private final int size;
+
+        Node(E element, Node<E> left, Node<E> right) {
+            this.element = element;
+            this.left = left;
+            this.right = right;
+            this.height = Math.max(height(left), height(right)) + 1;
+            this.size = size(left) + size(right) + 1;
+        }
+    }
+
+    private final Comparator<? super E> comparator;
+    private final Node<E> root;
+
+    private PersistentSortedSet(Comparator<? super E> comparator, Node<E> root) {
+        this.comparator = comparator;
+        this.root = root;
+    }
+
+    /**
+     * @param comparator the ordering of the elements, not null
+     * @return an empty set
+     */
+    static <E> PersistentSortedSet<E> empty(Comparator<? super E> comparator) {
+        return new PersistentSortedSet<>(Objects.requireNonNull(comparator), null);
+    }
+
+    int size() {
+        return size(root);
+    }
+
+    boolean isEmpty() {
+        return root == null;
+    }
+
+    boolean contains(E element) {
+        Node<E> node = root;
+        while (node != null) {
+            int c = comparator.compare(element, node.element);
+            if (c == 0) {
+                return true;
+            }
+            node = c < 0 ? node.left : node.right;
+        }
+        return false;
+    }
+
+    /**
+     * @param element the element to add
+     * @return a set with the element, or this if it is already present
+     */
+    PersistentSortedSet<E> plus(E element) {
+        Node<E> result = insert(root, element);
+        return result == root ? this : new PersistentSortedSet<>(comparator, result);
+    }
+
+    /**
+     * @param element the element to remove
+     * @return a set without the element, or this if it is absent
+     */
+    PersistentSortedSet<E> minus(E element) {
+        Node<E> result = delete(root, element);
+        return result == root ? this : new PersistentSortedSet<>(comparator, result);
+    }
+
+    /**
+     * @param element the element to compare with
+     * @return the number of elements strictly less than {@code element}
+     */
+    int rank(E element) {
+        int result = 0;
+        Node<E> node = root;
+        while (node != null) {
+            if (comparator.compare(element, node.element) <= 0) {
+                node = node.left;
+            } else {
+                result += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param element the element to compare with
+     * @return the least element strictly greater than {@code element}, or {@code null}
+     */
+    E higher(E element) {
+        E result = null;
+        Node<E> node = root;
+        while (node != null) {
+            if (comparator.compare(element, node.element) < 0) {
+                result = node.element;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the least element, or {@code null} if empty
+     */
+    E first() {
+        Node<E> node = root;
+        if (node == null) {
+            return null;
+        }
+        while (node.left != null) {
+            node = node.left;
+        }
+        return node.element;
+    }
+
+    /**
+     * Visits the elements from {@code from} (inclusive) to {@code to} (exclusive), in
+     * ascending order.
+     *
+     * @param from   the lower bound
+     * @param to     the upper bound
+     * @param action the action for each element
+     */
+    void forEach(E from, E to, Consumer<? super E> action) {
+        forEach(root, from, to, action);
+    }
+
+    /**
+     * @param action the action for each element, in ascending order
+     */
+    void forEach(Consumer<? super E> action) {
+        forEach(root, action);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("[");
+        forEach(element -> result.append(result.length() == 1 ? "" : ", ").append(element));
+        return result.append(']').toString();
+    }
+
+    private void forEach(Node<E> node, E from, E to, Consumer<? super E> action) {
+        if (node == null) {
+            return;
+        }
+        int lower = comparator.compare(node.element, from);
+        int upper = comparator.compare(node.element, to);
+        if (lower > 0) {
+            forEach(node.left, from, to, action);
+        }
+        if (lower >= 0 && upper < 0) {
+            action.accept(node.element);
+        }
+        if (upper < 0) {
+            forEach(node.right, from, to, action);
+        }
+    }
+
+    private static <E> void forEach(Node<E> node, Consumer<? super E> action) {
+        if (node != null) {
+            forEach(node.left, action);
+            action.accept(node.element);
+            forEach(node.right, action);
+        }
+    }
+
+    private Node<E> insert(Node<E> node, E element) {
+        if (node == null) {
+            return new Node<>(element, null, null);
+        }
+        int c = comparator.compare(element, node.element);
+        if (c < 0) {
+            Node<E> left = insert(node.left, element);
+            return left == node.left ? node : balance(node.element, left, node.right);
+        } else if (c > 0) {
+            Node<E> right = insert(node.right, element);
+            return right == node.right ? node : balance(node.element, node.left, right);
+        }
+        return node;
+    }
+
+    private Node<E> delete(Node<E> node, E element) {
+        if (node == null) {
+            return null;
+        }
+        int c = comparator.compare(element, node.element);
+        if (c < 0) {
+            Node<E> left = delete(node.left, element);
+            return left == node.left ? node : balance(node.element, left, node.right);
+        } else if (c > 0) {
+            Node<E> right = delete(node.right, element);
+            return right == node.right ? node : balance(node.element, node.left, right);
+        }
+        if (node.left == null) {
+            return node.right;
+        }
+        if (node.right == null) {
+            return node.left;
+        }
+        Node<E> successor = node.right;
+        while (successor.left != null) {
+            successor = successor.left;
+        }
+        return balance(successor.element, node.left, deleteFirst(node.right));
+    }
+
+    private static <E> Node<E> deleteFirst(Node<E> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        return balance(node.element, deleteFirst(node.left), node.right);
+    }
+
+    private static <E> Node<E> balance(E element, Node<E> left, Node<E> right) {
+        if (height(left) > height(right) + 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new Node<>(left.element, left.left,
+                        new Node<>(element, left.right, right));
+            }
+            Node<E> pivot = left.right;
+            return new Node<>(pivot.element, new Node<>(left.element, left.left, pivot.left),
+                    new Node<>(element, pivot.right, right));
+        }
+        if (height(right) > height(left) + 1) {
+            if (height(right.right) >= height(right.left)) {
+                return new Node<>(right.element, new Node<>(element, left, right.left),
+                        right.right);
+            }
+            Node<E> pivot = right.left;
+            return new Node<>(pivot.element, new Node<>(element, left, pivot.left),
+                    new Node<>(right.element, pivot.right, right.right));
+        }
+        return new Node<>(element, left, right);
+    }
+
+    private static int height(Node<?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import java.time.Instant;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A token-bucket rate limiter that reads time from a {@link WallClock}, so that it can be
+ * tested by setting a {@link FixedClock}. <br>
+ * Permits are refilled continuously at a fixed rate, up to a burst size. Setting the
+ * clock back in time delays refills until the clock catches up. For very hot limiters,
+ * the permits can be split into stripes, each with an equal share of the rate and burst
+ * size, which trades some precision for less contention.
+ *
+ * @implNote The state of each stripe is a single {@code long}, the time at which its bucket
+ * will be full again (the theoretical arrival time of the generic cell rate algorithm),
+ * so acquiring permits is a compare-and-set loop without locks. Stripes are padded apart
+ * to avoid false sharing.
+ */
+public final class RateLimiter {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final int PADDING = 8;
+
+    private final WallClock clock;
+    private final long baseSeconds;
+    private final int baseNanos;
+    private final long interval;
+    private final long tolerance;
+    private final int stripes;
+    private final AtomicLongArray states;
+
+    /**
+     * @param clock            the clock to refill by, not null
+     * @param permitsPerSecond the rate of refilling, positive
+     * @param burst            the maximum number of permits available at once, positive
+     */
+    public RateLimiter(WallClock clock, double permitsPerSecond, long burst) {
+        this(clock, permitsPerSecond, burst, 1);
+    }
+
+    /**
+     * @param clock            the clock to refill by, not null
+     * @param permitsPerSecond the rate of refilling, positive
+     * @param burst            the maximum number of permits available at once, which is
+     *                         rounded up to a multiple of {@code stripes}
+     * @param stripes          the number of stripes, positive
+     * @throws IllegalArgumentException if any of the numbers is not positive
+     */
+    public RateLimiter(WallClock clock, double permitsPerSecond, long burst, int stripes) {
+        if (!(permitsPerSecond > 0) || burst <= 0 || stripes <= 0) {
+            throw new IllegalArgumentException("Rate, burst and stripes must be positive.");
+        }
+        this.clock = Objects.requireNonNull(clock);
+        Instant now = clock.instant();
+        this.baseSeconds = now.getEpochSecond();
+        this.baseNanos = now.getNano();
+        this.stripes = stripes;
+        this.interval = Math.max(1, Math.round(NANOS_PER_SECOND / permitsPerSecond * stripes));
+        this.tolerance = Math.multiplyExact(interval, (burst + stripes - 1) / stripes);
+        this.states = new AtomicLongArray(stripes * PADDING);
+    }
+
+    /**
+     * @return {@code true} if a permit is acquired
+     */
+    public boolean tryAcquire() {
+        return tryAcquire(1);
+    }
+
+    /**
+     * Acquires the permits from one stripe, trying the stripe of the current thread first.
+     *
+     * @param permits the number of permits, positive
+     * @return {@code true} if the permits are acquired
+     * @throws IllegalArgumentException if {@code permits} is not positive
+     */
+    public boolean tryAcquire(int permits) {
+        if (permits <= 0) {
+            throw new IllegalArgumentException("permits must be positive.");
+        }
+        long now = now();
+        long cost = Math.multiplyExact(interval, permits);
+        int home = (int) (Thread.currentThread().getId() % stripes);
+        for (int i = 0; i < stripes; i++) {
+            int index = ((home + i) % stripes) * PADDING;
+            long state;
+            long next;
+            do {
+                state = states.get(index);
+                next = Math.max(state, now) + cost;
+            } while (next - now <= tolerance && !states.compareAndSet(index, state, next));
+            if (next - now <= tolerance) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of permits available, across all stripes
+     */
+    public long availablePermits() {
+        long now = now();
+        long result = 0;
+        for (int i = 0; i < stripes; i++) {
+            long used = Math.max(0, states.get(i * PADDING) - now);
+            result += Math.max(0, tolerance - used) / interval;
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[available=" + availablePermits()
+                + ", interval=" + interval + "ns, stripes=" + stripes + "]";
+    }
+
+    /**
+     * @return the nanoseconds since this was created
+     */
+    private long now() {
+        Instant now = clock.instant();
+        return (now.getEpochSecond() - baseSeconds) * NANOS_PER_SECOND
+                + now.getNano() - baseNanos;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import java.io.Closeable;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Objects;
+
+/**
+ * A {@link WallClock} decorator that records every reading into a memory-mapped journal,
+ * to be replayed by {@link ReplayingClock}. <br>
+ * Each reading is recorded as its epoch nanoseconds and the id of the reading thread. The
+ * journal is a ring of a fixed capacity, so only the most recent readings are kept. Clocks
+ * derived via {@link #offset(Duration)} and {@link #withZone(ZoneId)} record into the same
+ * journal. Epoch nanoseconds fit in a {@code long} from the year 1677 to 2262, and reading
+ * an instant outside of that range throws an {@link ArithmeticException}.
+ *
+ * @implNote Recording a reading is not lock-free: it claims a slot with an atomic
+ * increment and writes into the mapped file directly, but readings are completed in the
+ * order they are claimed, so a reading waits for the readings of other threads that
+ * claimed earlier slots. Every date and time representation is derived from a single
+ * recorded {@link #instant()}, while {@link #millis()} records its own reading at
+ * millisecond precision.
+ */
+public final class RecordingClock extends Clock implements WallClock, Closeable {
+
+    private final WallClock clock;
+    private final Journal journal;
+    private final ZoneId zone;
+
+    /**
+     * Records the readings of the given clock into a new journal file.
+     *
+     * @param clock    the clock to record, not null
+     * @param path     the journal file to create or truncate, not null
+     * @param capacity the maximum number of readings to keep
+     * @throws UncheckedIOException if the journal file cannot be created
+     */
+    public RecordingClock(WallClock clock, Path path, int capacity) {
+        this(clock, Journal.create(path, capacity), clock.getZone());
+    }
+
+    private RecordingClock(WallClock clock, Journal journal, ZoneId zone) {
+        this.clock = Objects.requireNonNull(clock);
+        this.journal = journal;
+        this.zone = Objects.requireNonNull(zone);
+    }
+
+    /**
+     * @throws ArithmeticException if the instant is outside of the range of epoch
+     *         nanoseconds, in which case it is not recorded
+     */
+    @Override
+    public Instant instant() {
+        Instant instant = clock.instant();
+        journal.append(Math.addExact(Math.multiplyExact(instant.getEpochSecond(),
+                1_000_000_000L), instant.getNano()), Thread.currentThread().getId());
+        return instant;
+    }
+
+    /**
+     * @throws ArithmeticException if the instant is outside of the range of epoch
+     *         nanoseconds, in which case it is not recorded
+     */
+    @Override
+    public long millis() {
+        long millis = clock.millis();
+        journal.append(Math.multiplyExact(millis, 1_000_000L),
+                Thread.currentThread().getId());
+        return millis;
+    }
+
+    @Override
+    public ZonedDateTime zonedDateTime() {
+        return ZonedDateTime.ofInstant(instant(), zone);
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zoneId) {
+        return zoneId.equals(zone) ? this : new RecordingClock(clock, journal, zoneId);
+    }
+
+    /**
+     * Offsets the underlying clock, which may modify it, e.g. for {@link FixedClock}.
+     *
+     * @param duration the duration to offset, not null
+     * @return a new {@link RecordingClock} recording into the same journal if the
+     * underlying clock returns a new instance, else this
+     */
+    @Override
+    public RecordingClock offset(Duration duration) {
+        WallClock result = clock.offset(duration);
+        return result == clock ? this : new RecordingClock(result, journal, zone);
+    }
+
+    /**
+     * @return the number of readings recorded, including those no longer kept
+     */
+    public long recorded() {
+        return journal.count();
+    }
+
+    /**
+     * Makes the readings so far visible to a {@link ReplayingClock}, and forces them to
+     * storage.
+     */
+    public void flush() {
+        journal.flush();
+    }
+
+    /**
+     * Flushes and closes the journal, for this and all derived clocks.
+     */
+    @Override
+    public void close() {
+        journal.close();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "@" + clock;
+    }
+}
@@ -0,0 +1,365 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.time.Clock;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.Temporal;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link WallClock} client of a {@link TimeServer}. <br>
+ * Reads are served from the latest date and time pushed by the server, so they do not
+ * involve the network. Once disconnected, the last date and time received is returned.
+ * Clocks derived via {@link #offset(Duration)} and {@link #withZone(ZoneId)} share the same
+ * connection. <br>
+ * Remote alarms are registered on, and fired by, the clock of the server, ignoring any
+ * offset or time-zone of this. Listeners are called on the thread receiving updates, and
+ * one that throws is reported to the uncaught exception handler of that thread.
+ */
+public final class RemoteClock extends Clock implements WallClock, Closeable {
+
+    private static final long CONNECT_TIMEOUT_SECONDS = 10;
+
+    private final Connection connection;
+    private final ZoneId zone;
+    private final Duration offset;
+
+    /**
+     * Connects to a {@link TimeServer} on the given loopback port.
+     *
+     * @param port the port of the server
+     * @throws UncheckedIOException if the server cannot be connected to
+     */
+    public RemoteClock(int port) {
+        this(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    /**
+     * Connects to a {@link TimeServer} at the given address, waiting for the first update.
+     *
+     * @param address the address of the server, not null
+     * @throws UncheckedIOException if the server cannot be connected to
+     */
+    public RemoteClock(SocketAddress address) {
+        this(new Connection(address), null, Duration.ZERO);
+    }
+
+    private RemoteClock(Connection connection, ZoneId zone, Duration offset) {
+        this.connection = connection;
+        this.zone = zone;
+        this.offset = offset;
+    }
+
+    @Override
+    public ZonedDateTime zonedDateTime() {
+        ZonedDateTime result = connection.current.plus(offset);
+        return zone == null ? result : result.withZoneSameInstant(zone);
+    }
+
+    @Override
+    public Instant instant() {
+        return connection.current.toInstant().plus(offset);
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone == null ? connection.current.getZone() : zone;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zoneId) {
+        return zoneId.equals(zone) ? this : new RemoteClock(connection, zoneId, offset);
+    }
+
+    /**
+     * Returns either a new {@link RemoteClock} sharing the same connection with a non-zero
+     * {@code duration} offset, else this.
+     *
+     * @param duration the duration to offset, not null
+     * @return either a new {@link RemoteClock} with a non-zero {@code duration} offset,
+     * else this
+     */
+    @Override
+    public RemoteClock offset(Duration duration) {
+        return duration.isZero() ? this
+                : new RemoteClock(connection, zone, offset.plus(duration));
+    }
+
+    /**
+     * Registers a listener for all updates on the server.
+     *
+     * @param listener the listener to register for all updates
+     * @see FixedAlarmClock#alarm(AlarmClockListener)
+     */
+    public void alarm(AlarmClockListener listener) {
+        connection.request(TimeProtocol.ALARM, listener, null);
+    }
+
+    /**
+     * Registers a listener for all updates happening on that date on the server.
+     *
+     * @param listener    the listener to register
+     * @param dateToAlarm the date to alarm for all updates at the date
+     * @see FixedAlarmClock#alarm(AlarmClockListener, LocalDate)
+     */
+    public void alarm(AlarmClockListener listener, LocalDate dateToAlarm) {
+        connection.request(TimeProtocol.ALARM, listener, Objects.requireNonNull(dateToAlarm));
+    }
+
+    /**
+     * Registers a listener for all updates happening on that time on the server.
+     *
+     * @param listener    the listener to register
+     * @param timeToAlarm the time to alarm for all updates at the time
+     * @see FixedAlarmClock#alarm(AlarmClockListener, LocalTime)
+     */
+    public void alarm(AlarmClockListener listener, LocalTime timeToAlarm) {
+        connection.request(TimeProtocol.ALARM, listener, Objects.requireNonNull(timeToAlarm));
+    }
+
+    /**
+     * Registers a listener for all updates happening on that date and time on the server.
+     *
+     * @param listener        the listener to register
+     * @param dateTimeToAlarm the date and time to alarm
+     * @see FixedAlarmClock#alarm(AlarmClockListener, LocalDateTime)
+     */
+    public void alarm(AlarmClockListener listener, LocalDateTime dateTimeToAlarm) {
+        connection.request(TimeProtocol.ALARM, listener,
+                Objects.requireNonNull(dateTimeToAlarm));
+    }
+
+    /**
+     * Unregisters a listener for all updates on the server.
+     *
+     * @param listener the listener to snooze for all updates
+     * @see FixedAlarmClock#snooze(AlarmClockListener)
+     */
+    public void snooze(AlarmClockListener listener) {
+        connection.request(TimeProtocol.SNOOZE, listener, null);
+    }
+
+    /**
+     * Unregisters a listener for all updates at the date on the server.
+     *
+     * @param listener     the listener to snooze
+     * @param dateToSnooze the date to snooze for all updates at the date
+     * @see FixedAlarmClock#snooze(AlarmClockListener, LocalDate)
+     */
+    public void snooze(AlarmClockListener listener, LocalDate dateToSnooze) {
+        connection.request(TimeProtocol.SNOOZE, listener,
+                Objects.requireNonNull(dateToSnooze));
+    }
+
+    /**
+     * Unregisters a listener for all updates at the time on the server.
+     *
+     * @param listener     the listener to snooze
+     * @param timeToSnooze the time to snooze for all updates at the time
+     * @see FixedAlarmClock#snooze(AlarmClockListener, LocalTime)
+     */
+    public void snooze(AlarmClockListener listener, LocalTime timeToSnooze) {
+        connection.request(TimeProtocol.SNOOZE, listener,
+                Objects.requireNonNull(timeToSnooze));
+    }
+
+    /**
+     * Unregisters a listener for all updates at the date and time on the server.
+     *
+     * @param listener         the listener to snooze
+     * @param dateTimeToSnooze the date and time to snooze
+     * @see FixedAlarmClock#snooze(AlarmClockListener, LocalDateTime)
+     */
+    public void snooze(AlarmClockListener listener, LocalDateTime dateTimeToSnooze) {
+        connection.request(TimeProtocol.SNOOZE, listener,
+                Objects.requireNonNull(dateTimeToSnooze));
+    }
+
+    /**
+     * @return {@code true} if still connected to the server
+     */
+    public boolean isConnected() {
+        return !connection.socket.isClosed();
+    }
+
+    /**
+     * Disconnects from the server, for this and all derived clocks.
+     */
+    @Override
+    public void close() {
+        connection.close();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "@" + zonedDateTime();
+    }
+
+    /**
+     * The connection to the server, and the latest date and time received.
+     */
+    private static final class Connection {
+
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private final CountDownLatch connected = new CountDownLatch(1);
+        private final AtomicInteger ids = new AtomicInteger();
+        private final Map<AlarmClockListener, Integer> idsByListener =
+                new ConcurrentHashMap<>();
+        private final Map<Integer, AlarmClockListener> listenersById =
+                new ConcurrentHashMap<>();
+        private volatile ZonedDateTime current;
+
+        Connection(SocketAddress address) {
+            Socket connecting = new Socket();
+            try {
+                connecting.setTcpNoDelay(true);
+                connecting.connect(address);
+                in = new DataInputStream(
+                        new BufferedInputStream(connecting.getInputStream()));
+                out = new DataOutputStream(
+                        new BufferedOutputStream(connecting.getOutputStream()));
+            } catch (IOException e) {
+                try {
+                    connecting.close();
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                throw new UncheckedIOException(e);
+            }
+            socket = connecting;
+            Thread thread = new Thread(this::receive, "wallclock-remote-clock");
+            thread.setDaemon(true);
+            thread.start();
+            try {
+                if (!connected.await(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                        || current == null) {
+                    close();
+                    throw new UncheckedIOException(
+                            new SocketTimeoutException("No update from " + address));
+                }
+            } catch (InterruptedException e) {
+                close();
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while connecting.", e);
+            }
+        }
+
+        synchronized void request(int request, AlarmClockListener listener,
+                Temporal temporal) {
+            Objects.requireNonNull(listener);
+            Integer id = request == TimeProtocol.ALARM
+                    ? idsByListener.computeIfAbsent(listener, this::register)
+                    : idsByListener.get(listener);
+            if (id == null) {
+                return;
+            }
+            if (request == TimeProtocol.SNOOZE && temporal == null) {
+                idsByListener.remove(listener);
+                listenersById.remove(id);
+            }
+            try {
+                out.writeByte(request);
+                out.writeInt(id);
+                TimeProtocol.writeTemporal(out, temporal);
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // ignore, as the connection is going away anyway
+            }
+            connected.countDown();
+        }
+
+        private Integer register(AlarmClockListener listener) {
+            int id = ids.incrementAndGet();
+            listenersById.put(id, listener);
+            return id;
+        }
+
+        private void receive() {
+            try {
+                while (true) {
+                    int update = in.read();
+                    if (update == TimeProtocol.TIME) {
+                        current = TimeProtocol.readZonedDateTime(in);
+                        connected.countDown();
+                    } else if (update == TimeProtocol.FIRE) {
+                        AlarmClockListener listener = listenersById.get(in.readInt());
+                        ZonedDateTime zdt = TimeProtocol.readZonedDateTime(in);
+                        if (listener != null) {
+                            trigger(listener, zdt);
+                        }
+                    } else if (update < 0) {
+                        break;
+                    } else {
+                        throw new StreamCorruptedException("Unknown update: " + update);
+                    }
+                }
+            } catch (IOException | DateTimeException e) {
+                // the server went away, or sent garbage
+            } finally {
+                close();
+            }
+        }
+
+        /**
+         * Reports a failing listener to the uncaught exception handler of this thread, so
+         * that it does not stop updates to this clock.
+         */
+        private static void trigger(AlarmClockListener listener, ZonedDateTime zdt) {
+            try {
+                listener.alarmTriggered(zdt);
+            } catch (RuntimeException e) {
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import java.io.Closeable;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link WallClock} that serves the readings recorded by a {@link RecordingClock} back,
+ * in the order they were recorded. <br>
+ * Every call to {@link #instant()}, {@link #millis()} or {@link #zonedDateTime()} (and the
+ * methods derived from it) consumes one reading. Clocks derived via
+ * {@link #withZone(ZoneId)} consume from the same sequence, and {@link #offset(Duration)}
+ * returns this clock, so that the readings are replayed exactly as recorded.
+ *
+ * @implNote Readings are read directly from the memory-mapped journal file.
+ */
+public final class ReplayingClock extends Clock implements WallClock, Closeable {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final Journal journal;
+    private final AtomicLong cursor;
+    private final ZoneId zone;
+
+    /**
+     * Replays the readings of the journal file at UTC.
+     *
+     * @param path the journal file to read, not null
+     * @throws UncheckedIOException if the journal file cannot be read
+     * @throws IllegalArgumentException if the file is not a journal
+     */
+    public ReplayingClock(Path path) {
+        this(path, ZoneOffset.UTC);
+    }
+
+    /**
+     * Replays the readings of the journal file at the given time-zone.
+     *
+     * @param path   the journal file to read, not null
+     * @param zoneId the time-zone to use, not null
+     * @throws UncheckedIOException if the journal file cannot be read
+     * @throws IllegalArgumentException if the file is not a journal
+     */
+    public ReplayingClock(Path path, ZoneId zoneId) {
+        this(Journal.open(path), zoneId);
+    }
+
+    private ReplayingClock(Journal journal, ZoneId zoneId) {
+        this(journal, new AtomicLong(journal.first()), zoneId);
+    }
+
+    private ReplayingClock(Journal journal, AtomicLong cursor, ZoneId zone) {
+        this.journal = journal;
+        this.cursor = cursor;
+        this.zone = Objects.requireNonNull(zone);
+    }
+
+    /**
+     * @return the next reading
+     * @throws IllegalStateException if there are no more readings
+     */
+    @Override
+    public Instant instant() {
+        long nanos = next();
+        return Instant.ofEpochSecond(Math.floorDiv(nanos, NANOS_PER_SECOND),
+                Math.floorMod(nanos, NANOS_PER_SECOND));
+    }
+
+    /**
+     * @return the next reading, in milliseconds
+     * @throws IllegalStateException if there are no more readings
+     */
+    @Override
+    public long millis() {
+        return Math.floorDiv(next(), 1_000_000L);
+    }
+
+    /**
+     * @return the next reading
+     * @throws IllegalStateException if there are no more readings
+     */
+    @Override
+    public ZonedDateTime zonedDateTime() {
+        return ZonedDateTime.ofInstant(instant(), zone);
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zoneId) {
+        return zoneId.equals(zone) ? this
+                : new ReplayingClock(journal, cursor, zoneId);
+    }
+
+    /**
+     * Returns this, as the readings of a {@link RecordingClock} offset while recording
+     * already include the offset.
+     *
+     * @param duration the duration to offset, not null
+     * @return this
+     */
+    @Override
+    public ReplayingClock offset(Duration duration) {
+        Objects.requireNonNull(duration);
+        return this;
+    }
+
+    /**
+     * @return the id of the thread that recorded the next reading, without consuming it
+     * @throws IllegalStateException if there are no more readings
+     */
+    public long nextThreadId() {
+        long index = cursor.get();
+        checkIndex(index);
+        return journal.threadIdAt(index);
+    }
+
+    /**
+     * @return the number of readings left
+     */
+    public long remaining() {
+        return Math.max(0, journal.count() - cursor.get());
+    }
+
+    @Override
+    public void close() {
+        journal.close();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "@" + cursor + "/" + journal.count();
+    }
+
+    private long next() {
+        long index = cursor.getAndIncrement();
+        checkIndex(index);
+        return journal.epochNanosAt(index);
+    }
+
+    private void checkIndex(long index) {
+        if (index >= journal.count()) {
+            throw new IllegalStateException("No more readings to replay.");
+        }
+    }
+}
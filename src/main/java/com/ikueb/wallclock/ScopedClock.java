@@ -0,0 +1,180 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A {@link WallClock} facade that resolves to the {@link FixedClock} of the current scope,
+ * else to a fallback clock. <br>
+ * A scope is opened per thread with {@link #open(FixedClock)}, and is inherited by the
+ * threads started from within it, which then share the same {@link FixedClock}. This lets
+ * code that reads a static clock be tested in parallel, with each test opening a scope of
+ * its own:
+ *
+ * <pre>
+ * static final ScopedClock CLOCK = new ScopedClock();
+ *
+ * try (ScopedClock.Scope scope = CLOCK.open(new FixedClock(dateTime))) {
+ *     // CLOCK reads from the given FixedClock on this thread
+ * }
+ * </pre>
+ *
+ * Pooled threads only inherit the scope at the time they are started, so tasks submitted
+ * to them should open their own scopes.
+ */
+public final class ScopedClock extends Clock implements WallClock {
+
+    private final InheritableThreadLocal<FixedClock> scoped;
+    private final WallClock fallback;
+    private final ZoneId zone;
+
+    /**
+     * Creates a facade that falls back to {@link TickingClock#atUTC()}.
+     */
+    public ScopedClock() {
+        this(TickingClock.atUTC());
+    }
+
+    /**
+     * Creates a facade that falls back to the given clock outside of any scope.
+     *
+     * @param fallback the clock to use outside of any scope, not null
+     */
+    public ScopedClock(WallClock fallback) {
+        this(new InheritableThreadLocal<>(), Objects.requireNonNull(fallback), null);
+    }
+
+    private ScopedClock(InheritableThreadLocal<FixedClock> scoped, WallClock fallback,
+            ZoneId zone) {
+        this.scoped = scoped;
+        this.fallback = fallback;
+        this.zone = zone;
+    }
+
+    /**
+     * Opens a scope for the current thread, and the threads started within it.
+     *
+     * @param clock the clock to resolve to within the scope, not null
+     * @return the scope, to be closed by the current thread
+     */
+    public Scope open(FixedClock clock) {
+        Scope scope = new Scope(scoped.get());
+        scoped.set(Objects.requireNonNull(clock));
+        return scope;
+    }
+
+    /**
+     * @return the {@link FixedClock} of the current scope, if any
+     */
+    public Optional<FixedClock> scoped() {
+        return Optional.ofNullable(scoped.get());
+    }
+
+    /**
+     * @return the {@link FixedClock} of the current scope, else the fallback clock
+     */
+    public WallClock resolve() {
+        FixedClock clock = scoped.get();
+        return clock == null ? fallback : clock;
+    }
+
+    @Override
+    public ZonedDateTime zonedDateTime() {
+        ZonedDateTime result = resolve().zonedDateTime();
+        return zone == null ? result : result.withZoneSameInstant(zone);
+    }
+
+    @Override
+    public Instant instant() {
+        return resolve().instant();
+    }
+
+    @Override
+    public long millis() {
+        return resolve().millis();
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone == null ? resolve().getZone() : zone;
+    }
+
+    /**
+     * @param zoneId the time-zone to use, not null
+     * @return a facade over the same scopes at the given time-zone
+     */
+    @Override
+    public Clock withZone(ZoneId zoneId) {
+        return zoneId.equals(zone) ? this : new ScopedClock(scoped, fallback, zoneId);
+    }
+
+    /**
+     * Offsets the clock that this resolves to, i.e. modifies the {@link FixedClock} of the
+     * current scope.
+     *
+     * @param duration the duration to offset, not null
+     * @return the result of offsetting the resolved clock
+     */
+    @Override
+    public WallClock offset(Duration duration) {
+        return resolve().offset(duration);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "@" + resolve();
+    }
+
+    /**
+     * A scope opened by {@link ScopedClock#open(FixedClock)}, which restores the previous
+     * scope of the thread when closed.
+     */
+    public final class Scope implements AutoCloseable {
+
+        private final Thread owner = Thread.currentThread();
+        private final FixedClock previous;
+        private boolean closed;
+
+        private Scope(FixedClock previous) {
+            this.previous = previous;
+        }
+
+        /**
+         * @throws IllegalStateException if not closed by the thread that opened it
+         */
+        @Override
+        public void close() {
+            if (Thread.currentThread() != owner) {
+                throw new IllegalStateException("Scope must be closed by its own thread.");
+            }
+            if (!closed) {
+                closed = true;
+                if (previous == null) {
+                    scoped.remove();
+                } else {
+                    scoped.set(previous);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Objects;
+import java.util.function.UnaryOperator;
+
+/**
+ * A {@link FixedWallClock} whose state lives in a memory-mapped file, so that it can be
+ * shared by several processes on the same host. <br>
+ * One process creates the file with {@link #create(Path, ZonedDateTime)}, and the others
+ * map it with {@link #open(Path)}. Any of them can then set the clock, and all of them
+ * see the change on their next reading. The time-zone is fixed when the file is created,
+ * and {@link #withZone(ZoneId)} returns a view of the same file at another time-zone.
+ *
+ * @implNote The file holds the epoch seconds and nanoseconds, guarded by a sequence lock:
+ * a writer locks the version region of the file, sets the next odd version, writes, then
+ * publishes the following even version. Readers retry until they see the same even version
+ * before and after reading, so reads are lock-free and do not write to the file. A process
+ * that dies while writing leaves the version odd, and readers spin until the next writer,
+ * which then holds the lock, completes the version.
+ */
+public final class SharedFixedClock extends Clock implements FixedWallClock, Closeable {
+
+    private static final long MAGIC = 0x57616c6c636c6b32L;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION = 8;
+    private static final int SECONDS = 16;
+    private static final int NANOS = 24;
+    private static final int ZONE_LENGTH = 32;
+    private static final int ZONE = 40;
+    private static final int ZONE_MAX_LENGTH = 64;
+    private static final int SIZE = ZONE + ZONE_MAX_LENGTH;
+
+    private final FileChannel channel;
+    private final SharedMemory memory;
+    private final ZoneId zone;
+
+    private SharedFixedClock(FileChannel channel, SharedMemory memory, ZoneId zone) {
+        this.channel = channel;
+        this.memory = memory;
+        this.zone = Objects.requireNonNull(zone);
+    }
+
+    /**
+     * Creates the shared file, or re-initializes an existing one. <br>
+     * This should be done before other processes {@link #open(Path)} it, as they do not
+     * pick up a change of time-zone.
+     *
+     * @param path   the file to create, not null
+     * @param source the date, time and time-zone to start with, not null
+     * @return a new instance
+     * @throws UncheckedIOException if the file cannot be created or mapped
+     * @throws IllegalArgumentException if the time-zone id is too long
+     */
+    public static SharedFixedClock create(Path path, ZonedDateTime source) {
+        byte[] zoneId = source.getZone().getId().getBytes(StandardCharsets.US_ASCII);
+        if (zoneId.length > ZONE_MAX_LENGTH) {
+            throw new IllegalArgumentException("Time-zone id is too long: "
+                    + source.getZone());
+        }
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            SharedMemory memory = new SharedMemory(channel,
+                    channel.map(FileChannel.MapMode.READ_WRITE, 0, SIZE));
+            memory.putLongRelease(MAGIC_OFFSET, 0);
+            memory.putLong(ZONE_LENGTH, zoneId.length);
+            for (int i = 0; i < zoneId.length; i++) {
+                memory.buffer().put(ZONE + i, zoneId[i]);
+            }
+            memory.putLong(SECONDS, source.toEpochSecond());
+            memory.putLong(NANOS, source.getNano());
+            memory.putLongRelease(VERSION, 0);
+            memory.putLongRelease(MAGIC_OFFSET, MAGIC);
+            return new SharedFixedClock(channel, memory, source.getZone());
+        } catch (IOException e) {
+            close(channel);
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Maps an existing shared file.
+     *
+     * @param path the file to open, not null
+     * @return a new instance
+     * @throws UncheckedIOException if the file cannot be read or mapped
+     * @throws IllegalArgumentException if the file is not a shared clock
+     */
+    public static SharedFixedClock open(Path path) {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            if (channel.size() < SIZE) {
+                throw new IllegalArgumentException("Not a shared clock: " + path);
+            }
+            SharedMemory memory = new SharedMemory(channel,
+                    channel.map(FileChannel.MapMode.READ_WRITE, 0, SIZE));
+            long length = memory.getLong(ZONE_LENGTH);
+            if (memory.getLongAcquire(MAGIC_OFFSET) != MAGIC || length < 0
+                    || length > ZONE_MAX_LENGTH) {
+                throw new IllegalArgumentException("Not a shared clock: " + path);
+            }
+            byte[] zoneId = new byte[(int) length];
+            for (int i = 0; i < zoneId.length; i++) {
+                zoneId[i] = memory.buffer().get(ZONE + i);
+            }
+            return new SharedFixedClock(channel, memory,
+                    ZoneId.of(new String(zoneId, StandardCharsets.US_ASCII)));
+        } catch (IOException e) {
+            close(channel);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            close(channel);
+            throw e;
+        }
+    }
+
+    @Override
+    public Instant instant() {
+        while (true) {
+            long version = memory.getLongAcquire(VERSION);
+            if ((version & 1) == 0) {
+                long seconds = memory.getLong(SECONDS);
+                long nanos = memory.getLong(NANOS);
+                SharedMemory.loadFence();
+                if (memory.getLong(VERSION) == version) {
+                    return Instant.ofEpochSecond(seconds, nanos);
+                }
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+    @Override
+    public long millis() {
+        while (true) {
+            long version = memory.getLongAcquire(VERSION);
+            if ((version & 1) == 0) {
+                long seconds = memory.getLong(SECONDS);
+                long nanos = memory.getLong(NANOS);
+                SharedMemory.loadFence();
+                if (memory.getLong(VERSION) == version) {
+                    return Math.addExact(Math.multiplyExact(seconds, 1000L),
+                            nanos / 1_000_000L);
+                }
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+    @Override
+    public ZonedDateTime zonedDateTime() {
+        return ZonedDateTime.ofInstant(instant(), zone);
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    /**
+     * @param zoneId the time-zone to use, not null
+     * @return a view of the same shared clock at the given time-zone
+     */
+    @Override
+    public SharedFixedClock withZone(ZoneId zoneId) {
+        return zoneId.equals(zone) ? this : new SharedFixedClock(channel, memory, zoneId);
+    }
+
+    /**
+     * Sets the date of this clock, the same instant is treated as no-op.
+     *
+     * @param date the date to set, not null
+     * @return this instance
+     */
+    @Override
+    public SharedFixedClock setDate(LocalDate date) {
+        Objects.requireNonNull(date);
+        return update(zdt -> zdt.with(date));
+    }
+
+    /**
+     * Sets the time of this clock, the same instant is treated as no-op.
+     *
+     * @param time the time to set, not null
+     * @return this instance
+     */
+    @Override
+    public SharedFixedClock setTime(LocalTime time) {
+        Objects.requireNonNull(time);
+        return update(zdt -> zdt.with(time));
+    }
+
+    /**
+     * Sets the date and time of this clock, the same instant is treated as no-op.
+     *
+     * @param dateTime the date and time to set, not null
+     * @return this instance
+     */
+    @Override
+    public SharedFixedClock setDateTime(LocalDateTime dateTime) {
+        Objects.requireNonNull(dateTime);
+        return update(zdt -> zdt.with(dateTime));
+    }
+
+    /**
+     * Adds the duration to this clock, zero-length durations are treated as no-op.
+     *
+     * @param duration the duration to add, not null
+     * @return this instance
+     */
+    @Override
+    public SharedFixedClock offset(Duration duration) {
+        return duration.isZero() ? this : update(zdt -> zdt.plus(duration));
+    }
+
+    /**
+     * Closes the underlying file. <br>
+     * The file stays mapped until this and its views are garbage collected.
+     */
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "@" + zonedDateTime();
+    }
+
+    /**
+     * Applies the operator to a consistent reading, as the lock excludes other writers.
+     */
+    private SharedFixedClock update(UnaryOperator<ZonedDateTime> operator) {
+        Instant oldValue;
+        Instant newValue;
+        FileLock lock = memory.lock(VERSION, 8);
+        try {
+            long version = memory.getLongAcquire(VERSION);
+            oldValue = Instant.ofEpochSecond(memory.getLong(SECONDS), memory.getLong(NANOS));
+            newValue = operator.apply(oldValue.atZone(zone)).toInstant();
+            if (newValue.equals(oldValue) && (version & 1) == 0) {
+                return this;
+            }
+            long odd = version | 1;
+            memory.putLong(VERSION, odd);
+            SharedMemory.storeFence();
+            memory.putLong(SECONDS, newValue.getEpochSecond());
+            memory.putLong(NANOS, newValue.getNano());
+            memory.putLongRelease(VERSION, odd + 1);
+        } finally {
+            release(lock);
+        }
+        ClockEvents.mutation(this, oldValue, newValue);
+        return this;
+    }
+
+    private static void release(FileLock lock) {
+        try {
+            lock.release();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void close(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // ignore, as the original failure is reported
+            }
+        }
+    }
+}
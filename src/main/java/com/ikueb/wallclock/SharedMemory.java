@@ -0,0 +1,156 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+
+/**
+ * Ordered access to the {@code long} values of a memory-mapped file, and an exclusive
+ * lock on them across processes, which {@link MappedByteBuffer} does not provide on
+ * Java 8. <br>
+ * Offsets are in bytes, and must be 8-byte aligned.
+ *
+ * @implNote Java 8 has no public memory fence API, so the fences are looked up once:
+ * {@code VarHandle.acquireFence()} and {@code VarHandle.releaseFence()} where available,
+ * else {@code sun.misc.Unsafe.loadFence()} and {@code sun.misc.Unsafe.storeFence()}.
+ * Mutual exclusion uses {@link FileChannel#lock(long, long, boolean)}, which locks
+ * against other processes, and is retried while another thread of this process holds the
+ * lock.
+ */
+final class SharedMemory {
+
+    private static final MethodHandle LOAD_FENCE = fence("acquireFence", "loadFence");
+    private static final MethodHandle STORE_FENCE = fence("releaseFence", "storeFence");
+
+    private final FileChannel channel;
+    /**
+     * Strongly referenced, so that the file is not unmapped while in use.
+     */
+    private final MappedByteBuffer buffer;
+
+    SharedMemory(FileChannel channel, MappedByteBuffer buffer) {
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    MappedByteBuffer buffer() {
+        return buffer;
+    }
+
+    long getLong(int offset) {
+        return buffer.getLong(offset);
+    }
+
+    /**
+     * @return the value, which is read before any load after this
+     */
+    long getLongAcquire(int offset) {
+        long result = buffer.getLong(offset);
+        loadFence();
+        return result;
+    }
+
+    void putLong(int offset, long value) {
+        buffer.putLong(offset, value);
+    }
+
+    /**
+     * Writes the value after any store before this.
+     */
+    void putLongRelease(int offset, long value) {
+        storeFence();
+        buffer.putLong(offset, value);
+    }
+
+    /**
+     * Locks a region exclusively, waiting for other processes and threads to release it.
+     *
+     * @param offset the start of the region
+     * @param length the length of the region
+     * @return the lock, to be released by the caller
+     * @throws UncheckedIOException if the file cannot be locked
+     */
+    FileLock lock(int offset, int length) {
+        while (true) {
+            try {
+                return channel.lock(offset, length, false);
+            } catch (OverlappingFileLockException e) {
+                Thread.yield();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Prevents the loads before this from being reordered with the loads and stores after.
+     */
+    static void loadFence() {
+        invoke(LOAD_FENCE);
+    }
+
+    /**
+     * Prevents the loads and stores before this from being reordered with the stores after.
+     */
+    static void storeFence() {
+        invoke(STORE_FENCE);
+    }
+
+    private static void invoke(MethodHandle fence) {
+        try {
+            fence.invokeExact();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param varHandleFence the name of the {@code VarHandle} fence, from Java 9
+     * @param unsafeFence    the name of the equivalent {@code sun.misc.Unsafe} fence
+     * @return a handle to the fence, taking no arguments
+     * @throws IllegalStateException if neither fence is available
+     */
+    private static MethodHandle fence(String varHandleFence, String unsafeFence) {
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        MethodType type = MethodType.methodType(void.class);
+        try {
+            return lookup.findStatic(Class.forName("java.lang.invoke.VarHandle"),
+                    varHandleFence, type);
+        } catch (ReflectiveOperationException e) {
+            // Java 8, fall through to sun.misc.Unsafe
+        }
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return lookup.findVirtual(unsafeClass, unsafeFence, type)
+                    .bindTo(field.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            throw new IllegalStateException("No memory fence available: " + unsafeFence, e);
+        }
+    }
+}
@@ -84,6 +84,11 @@ public final class TickingClock extends Clock implements WallClock, Serializable
         return clock.instant();
     }
 
+    @Override
+    public long millis() {
+        return clock.millis();
+    }
+
     @Override
     public ZoneId getZone() {
         return clock.getZone();
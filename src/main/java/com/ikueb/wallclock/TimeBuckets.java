@@ -0,0 +1,197 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Floors epoch milliseconds, e.g. from {@link WallClock#millis()}, to the start of the
+ * minute, hour or day at a time-zone, for bucketing events by time. <br>
+ * Bucket ids are the epoch milliseconds of the start of the bucket. Local days start at
+ * midnight, or at the end of the gap if midnight does not exist, like
+ * {@link java.time.LocalDate#atStartOfDay(ZoneId)}. Other widths are floored at the offset
+ * in effect at the given instant. <br>
+ * Instances are immutable and thread-safe.
+ *
+ * @implNote Fixed offsets, including UTC, are handled with arithmetic only. For other
+ * time-zones, the offset transitions between the years 1900 and 2200 are computed up
+ * front, and offsets are looked up by binary search, so flooring does not allocate.
+ * Instants outside of that range fall back to {@link ZoneRules}, which allocates.
+ */
+public final class TimeBuckets {
+
+    /**
+     * Milliseconds per minute.
+     */
+    public static final long MINUTE = 60_000L;
+
+    /**
+     * Milliseconds per hour.
+     */
+    public static final long HOUR = 60 * MINUTE;
+
+    /**
+     * Milliseconds per (standard) day.
+     */
+    public static final long DAY = 24 * HOUR;
+
+    private static final long TABLE_FROM = -2_208_988_800_000L;
+    private static final long TABLE_TO = 7_258_118_400_000L;
+    private static final long MAX_OFFSET = 18 * HOUR;
+
+    private final ZoneId zone;
+    private final ZoneRules rules;
+    private final long fixedOffset;
+    private final long[] transitions;
+    private final int[] offsets;
+
+    /**
+     * @param zone the time-zone to bucket at, not null
+     */
+    public TimeBuckets(ZoneId zone) {
+        this.zone = Objects.requireNonNull(zone);
+        this.rules = zone.getRules();
+        if (rules.isFixedOffset()) {
+            fixedOffset = rules.getOffset(Instant.EPOCH).getTotalSeconds() * 1000L;
+            transitions = null;
+            offsets = null;
+            return;
+        }
+        fixedOffset = 0;
+        long[] instants = new long[64];
+        int[] values = new int[65];
+        values[0] = rules.getOffset(Instant.ofEpochMilli(TABLE_FROM)).getTotalSeconds()
+                * 1000;
+        int count = 0;
+        ZoneOffsetTransition transition =
+                rules.nextTransition(Instant.ofEpochMilli(TABLE_FROM));
+        while (transition != null && transition.toEpochSecond() * 1000 < TABLE_TO) {
+            if (count == instants.length) {
+                instants = Arrays.copyOf(instants, count * 2);
+                values = Arrays.copyOf(values, count * 2 + 1);
+            }
+            instants[count] = transition.toEpochSecond() * 1000;
+            values[++count] = transition.getOffsetAfter().getTotalSeconds() * 1000;
+            transition = rules.nextTransition(transition.getInstant());
+        }
+        transitions = Arrays.copyOf(instants, count);
+        offsets = Arrays.copyOf(values, count + 1);
+    }
+
+    /**
+     * @return the time-zone
+     */
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    /**
+     * @param epochMillis the instant
+     * @return the offset from UTC at the instant, in milliseconds
+     */
+    public long offsetMillis(long epochMillis) {
+        if (transitions == null) {
+            return fixedOffset;
+        }
+        if (epochMillis < TABLE_FROM || epochMillis >= TABLE_TO) {
+            return rules.getOffset(Instant.ofEpochMilli(epochMillis)).getTotalSeconds()
+                    * 1000L;
+        }
+        int index = Arrays.binarySearch(transitions, epochMillis);
+        return offsets[index >= 0 ? index + 1 : -index - 1];
+    }
+
+    /**
+     * @param epochMillis the instant
+     * @return the start of the minute
+     */
+    public long floorMinute(long epochMillis) {
+        return floor(epochMillis, MINUTE);
+    }
+
+    /**
+     * @param epochMillis the instant
+     * @return the start of the hour
+     */
+    public long floorHour(long epochMillis) {
+        return floor(epochMillis, HOUR);
+    }
+
+    /**
+     * @param epochMillis the instant
+     * @return the start of the local day
+     */
+    public long floorDay(long epochMillis) {
+        long offset = offsetMillis(epochMillis);
+        long midnight = Math.floorDiv(epochMillis + offset, DAY) * DAY;
+        if (transitions == null) {
+            return midnight - offset;
+        }
+        long earlier = offsetMillis(midnight - MAX_OFFSET);
+        long later = offsetMillis(midnight + MAX_OFFSET);
+        long result = Long.MAX_VALUE;
+        if (offsetMillis(midnight - earlier) == earlier) {
+            result = midnight - earlier;
+        }
+        if (offsetMillis(midnight - later) == later) {
+            result = Math.min(result, midnight - later);
+        }
+        if (result == Long.MAX_VALUE) {
+            // midnight is in a gap, so the day starts at the transition
+            result = transitionAtOrBefore(midnight - earlier);
+        }
+        return result;
+    }
+
+    /**
+     * Floors the instant to a multiple of the width in local time, using the offset in
+     * effect at the instant.
+     *
+     * @param epochMillis the instant
+     * @param widthMillis the width of buckets, which must divide a day
+     * @return the start of the bucket
+     * @throws IllegalArgumentException if {@code widthMillis} does not divide a day
+     */
+    public long floor(long epochMillis, long widthMillis) {
+        if (widthMillis <= 0 || DAY % widthMillis != 0) {
+            throw new IllegalArgumentException("Width must divide a day: " + widthMillis);
+        }
+        if (widthMillis == DAY) {
+            return floorDay(epochMillis);
+        }
+        long offset = offsetMillis(epochMillis);
+        return Math.floorDiv(epochMillis + offset, widthMillis) * widthMillis - offset;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "@" + zone;
+    }
+
+    private long transitionAtOrBefore(long epochMillis) {
+        if (epochMillis < TABLE_FROM || epochMillis >= TABLE_TO) {
+            return rules.previousTransition(Instant.ofEpochMilli(epochMillis + 1))
+                    .toEpochSecond() * 1000;
+        }
+        int index = Arrays.binarySearch(transitions, epochMillis);
+        return transitions[index >= 0 ? index : -index - 2];
+    }
+}
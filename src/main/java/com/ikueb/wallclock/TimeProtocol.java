@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.Temporal;
+
+/**
+ * The wire format between {@link TimeServer} and {@link RemoteClock}. <br>
+ * Servers send {@link #TIME} updates and {@link #FIRE} notifications of remote alarms, and
+ * clients send {@link #ALARM} and {@link #SNOOZE} requests. Alarm registrations are
+ * identified by a client-assigned id, and carry an optional date and/or time.
+ */
+final class TimeProtocol {
+
+    static final int TIME = 1;
+    static final int FIRE = 2;
+    static final int ALARM = 3;
+    static final int SNOOZE = 4;
+
+    private static final int ALL = 0;
+    private static final int DATE = 1;
+    private static final int TIME_OF_DAY = 2;
+    private static final int DATE_TIME = 3;
+
+    private TimeProtocol() {
+        // empty
+    }
+
+    static void writeZonedDateTime(DataOutput out, ZonedDateTime zdt) throws IOException {
+        out.writeLong(zdt.toEpochSecond());
+        out.writeInt(zdt.getNano());
+        out.writeUTF(zdt.getZone().getId());
+    }
+
+    static ZonedDateTime readZonedDateTime(DataInput in) throws IOException {
+        Instant instant = Instant.ofEpochSecond(in.readLong(), in.readInt());
+        return ZonedDateTime.ofInstant(instant, ZoneId.of(in.readUTF()));
+    }
+
+    /**
+     * @param out the output to write to
+     * @param temporal the {@link LocalDate}, {@link LocalTime} or {@link LocalDateTime},
+     *            or {@code null} for all updates
+     * @throws IOException if the output cannot be written to
+     */
+    static void writeTemporal(DataOutput out, Temporal temporal) throws IOException {
+        if (temporal == null) {
+            out.writeByte(ALL);
+        } else if (temporal instanceof LocalDate) {
+            out.writeByte(DATE);
+            out.writeLong(((LocalDate) temporal).toEpochDay());
+        } else if (temporal instanceof LocalTime) {
+            out.writeByte(TIME_OF_DAY);
+            out.writeLong(((LocalTime) temporal).toNanoOfDay());
+        } else if (temporal instanceof LocalDateTime) {
+            out.writeByte(DATE_TIME);
+            out.writeLong(((LocalDateTime) temporal).toLocalDate().toEpochDay());
+            out.writeLong(((LocalDateTime) temporal).toLocalTime().toNanoOfDay());
+        } else {
+            throw new IllegalArgumentException("Unsupported temporal: " + temporal);
+        }
+    }
+
+    /**
+     * @param in the input to read from
+     * @return the {@link LocalDate}, {@link LocalTime} or {@link LocalDateTime}, or
+     *         {@code null} for all updates
+     * @throws IOException if the input cannot be read from, or is invalid
+     */
+    static Temporal readTemporal(DataInput in) throws IOException {
+        int kind = in.readByte();
+        switch (kind) {
+        case ALL:
+            return null;
+        case DATE:
+            return LocalDate.ofEpochDay(in.readLong());
+        case TIME_OF_DAY:
+            return LocalTime.ofNanoOfDay(in.readLong());
+        case DATE_TIME:
+            return LocalDateTime.of(LocalDate.ofEpochDay(in.readLong()),
+                    LocalTime.ofNanoOfDay(in.readLong()));
+        default:
+            throw new StreamCorruptedException("Unknown temporal kind: " + kind);
+        }
+    }
+}
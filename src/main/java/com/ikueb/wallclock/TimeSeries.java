@@ -0,0 +1,215 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A series of instants, from a start (inclusive) over a range (exclusive) at a fixed step,
+ * e.g. from {@link WallClock#instants(Duration, Duration)}. <br>
+ * The element at an index is computed directly from the index, so the streams split
+ * evenly and scale linearly in parallel. {@link #epochMillis()} does not allocate per
+ * element.
+ */
+public final class TimeSeries {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final BigInteger NANOS = BigInteger.valueOf(NANOS_PER_SECOND);
+    private static final int CHARACTERISTICS = Spliterator.ORDERED | Spliterator.SIZED
+            | Spliterator.SUBSIZED | Spliterator.IMMUTABLE | Spliterator.NONNULL
+            | Spliterator.DISTINCT;
+
+    private final long startSeconds;
+    private final int startNanos;
+    private final long stepSeconds;
+    private final int stepNanos;
+    private final long size;
+
+    private TimeSeries(Instant start, Duration step, long size) {
+        this.startSeconds = start.getEpochSecond();
+        this.startNanos = start.getNano();
+        this.stepSeconds = step.getSeconds();
+        this.stepNanos = step.getNano();
+        this.size = size;
+    }
+
+    /**
+     * @param start the first instant, not null
+     * @param range the duration after {@code start} to stop before, not negative
+     * @param step  the duration between instants, positive
+     * @return the series of instants
+     * @throws IllegalArgumentException if {@code range} is negative, {@code step} is not
+     *             positive, or there are more than {@code Long.MAX_VALUE / 10^9} instants
+     */
+    public static TimeSeries of(Instant start, Duration range, Duration step) {
+        Objects.requireNonNull(start);
+        if (range.isNegative()) {
+            throw new IllegalArgumentException("range cannot be negative.");
+        }
+        if (step.isNegative() || step.isZero()) {
+            throw new IllegalArgumentException("step must be positive.");
+        }
+        BigInteger[] quotient = nanos(range).divideAndRemainder(nanos(step));
+        BigInteger size = quotient[1].signum() == 0 ? quotient[0]
+                : quotient[0].add(BigInteger.ONE);
+        if (size.bitLength() > 63 || size.longValue() > Long.MAX_VALUE / NANOS_PER_SECOND) {
+            throw new IllegalArgumentException("Too many instants: " + size);
+        }
+        // fails fast if the end is beyond the range of Instant
+        start.plus(range);
+        return new TimeSeries(start, step, size.longValue());
+    }
+
+    private static BigInteger nanos(Duration duration) {
+        return BigInteger.valueOf(duration.getSeconds()).multiply(NANOS)
+                .add(BigInteger.valueOf(duration.getNano()));
+    }
+
+    /**
+     * @return the number of instants
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @param index the index, from {@code 0} (inclusive) to {@link #size()} (exclusive)
+     * @return the instant at the index
+     * @throws IndexOutOfBoundsException if {@code index} is out of range
+     */
+    public Instant get(long index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Invalid index: " + index);
+        }
+        return instantAt(index);
+    }
+
+    /**
+     * @return a spliterator of the instants
+     */
+    public Spliterator<Instant> spliterator() {
+        return new IndexSpliterator<>(this::instantAt, 0, size);
+    }
+
+    /**
+     * @return a sequential stream of the instants
+     */
+    public Stream<Instant> instants() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * @param zone the time-zone to use, not null
+     * @return a sequential stream of the instants at the time-zone
+     */
+    public Stream<ZonedDateTime> zonedDateTimes(ZoneId zone) {
+        Objects.requireNonNull(zone);
+        return StreamSupport.stream(new IndexSpliterator<>(
+                index -> ZonedDateTime.ofInstant(instantAt(index), zone), 0, size), false);
+    }
+
+    /**
+     * @return a sequential stream of the instants in milliseconds from the epoch
+     */
+    public LongStream epochMillis() {
+        return LongStream.range(0, size).map(this::epochMillisAt);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[start=" + instantAt(0) + ", step="
+                + Duration.ofSeconds(stepSeconds, stepNanos) + ", size=" + size + "]";
+    }
+
+    private Instant instantAt(long index) {
+        long nanos = startNanos + index * stepNanos;
+        return Instant.ofEpochSecond(startSeconds + index * stepSeconds
+                + Math.floorDiv(nanos, NANOS_PER_SECOND),
+                Math.floorMod(nanos, NANOS_PER_SECOND));
+    }
+
+    private long epochMillisAt(long index) {
+        long nanos = startNanos + index * stepNanos;
+        long seconds = startSeconds + index * stepSeconds
+                + Math.floorDiv(nanos, NANOS_PER_SECOND);
+        return seconds * 1000 + Math.floorMod(nanos, NANOS_PER_SECOND) / 1_000_000;
+    }
+
+    /**
+     * A spliterator over a range of indices, which splits in halves.
+     */
+    private static final class IndexSpliterator<T> implements Spliterator<T> {
+
+        private final LongFunction<T> function;
+        private long from;
+        private final long to;
+
+        IndexSpliterator(LongFunction<T> function, long from, long to) {
+            this.function = function;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (from >= to) {
+                return false;
+            }
+            action.accept(function.apply(from++));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            for (long i = from; i < to; i++) {
+                action.accept(function.apply(i));
+            }
+            from = to;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            long middle = (from + to) >>> 1;
+            if (middle <= from) {
+                return null;
+            }
+            Spliterator<T> prefix = new IndexSpliterator<>(function, from, middle);
+            from = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics() {
+            return CHARACTERISTICS;
+        }
+    }
+}
@@ -0,0 +1,342 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Serves the date and time of a {@link FixedAlarmClock} to {@link RemoteClock} clients over
+ * a loopback socket, e.g. for tests that run several processes on one host. <br>
+ * Clients are pushed the new date and time whenever the clock is set, so that their reads
+ * stay local. Clients can also register remote alarms, which are fired on the clock of
+ * this server.
+ *
+ * @implNote Each client has its own writer thread, so that a slow or stalled client does
+ * not hold up the others. Updates that happen while a writer is busy are coalesced, so
+ * that its client is sent only the latest date and time, and all pending alarms, with one
+ * flush per round. A client with more than {@value #MAX_PENDING_ALARMS} alarms pending is
+ * disconnected, so that a stalled client cannot grow the memory of this server without
+ * bound.
+ */
+public final class TimeServer implements Closeable {
+
+    /**
+     * The maximum number of fired alarms pending to be sent to a client.
+     */
+    static final int MAX_PENDING_ALARMS = 1024;
+
+    private final FixedAlarmClock clock;
+    private final ServerSocket serverSocket;
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final Semaphore signal = new Semaphore(0);
+    private final AlarmClockListener listener = zdt -> signal.release();
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "wallclock-time-server");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean running = true;
+
+    /**
+     * Serves the given clock on an ephemeral loopback port.
+     *
+     * @param clock the clock to serve, not null
+     * @throws UncheckedIOException if the server socket cannot be bound
+     */
+    public TimeServer(FixedAlarmClock clock) {
+        this(clock, 0);
+    }
+
+    /**
+     * Serves the given clock on the given loopback port.
+     *
+     * @param clock the clock to serve, not null
+     * @param port  the port to bind to, or {@code 0} for an ephemeral port
+     * @throws UncheckedIOException if the server socket cannot be bound
+     */
+    public TimeServer(FixedAlarmClock clock, int port) {
+        this.clock = Objects.requireNonNull(clock);
+        try {
+            this.serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        clock.alarm(listener);
+        executor.execute(this::accept);
+        executor.execute(this::push);
+    }
+
+    /**
+     * @return the clock being served
+     */
+    public FixedAlarmClock getClock() {
+        return clock;
+    }
+
+    /**
+     * @return the port being served on
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return the number of connected clients
+     */
+    public int clients() {
+        return connections.size();
+    }
+
+    /**
+     * Stops serving, disconnecting all clients and removing their remote alarms.
+     */
+    @Override
+    public void close() {
+        running = false;
+        clock.snooze(listener);
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // ignore, as the server is stopping anyway
+        }
+        connections.forEach(Connection::close);
+        executor.shutdownNow();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "@" + getPort() + "[clients=" + clients() + "]";
+    }
+
+    private void accept() {
+        while (running) {
+            try {
+                Connection connection = new Connection(serverSocket.accept());
+                connections.add(connection);
+                executor.execute(connection::receive);
+                executor.execute(connection::send);
+                connection.wake();
+            } catch (IOException e) {
+                // the server socket is closed, or the client went away
+            }
+        }
+    }
+
+    private void push() {
+        while (running) {
+            try {
+                signal.acquire();
+            } catch (InterruptedException e) {
+                return;
+            }
+            signal.drainPermits();
+            connections.forEach(Connection::wake);
+        }
+    }
+
+    /**
+     * A connected client.
+     */
+    private final class Connection {
+
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private final Map<Integer, AlarmClockListener> proxies = new ConcurrentHashMap<>();
+        private final BlockingQueue<Fired> fired =
+                new ArrayBlockingQueue<>(MAX_PENDING_ALARMS);
+        private final Semaphore pending = new Semaphore(0);
+        private ZonedDateTime lastSent;
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            socket.setTcpNoDelay(true);
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = new DataOutputStream(
+                    new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        /**
+         * Handles the requests of the client, until it disconnects.
+         */
+        void receive() {
+            try {
+                while (true) {
+                    int request = in.read();
+                    if (request < 0) {
+                        break;
+                    }
+                    int id = in.readInt();
+                    Temporal temporal = TimeProtocol.readTemporal(in);
+                    if (request == TimeProtocol.ALARM) {
+                        alarm(proxies.computeIfAbsent(id, this::proxy), temporal);
+                    } else if (request == TimeProtocol.SNOOZE) {
+                        snooze(id, temporal);
+                    } else {
+                        throw new StreamCorruptedException("Unknown request: " + request);
+                    }
+                }
+            } catch (IOException | DateTimeException e) {
+                // the client went away, or sent garbage
+            } finally {
+                close();
+            }
+        }
+
+        /**
+         * Wakes the writer of this client up, without blocking.
+         */
+        void wake() {
+            pending.release();
+        }
+
+        /**
+         * Sends the latest date and time if it has changed, then the pending alarms, until
+         * the client disconnects. <br>
+         * Only the writer thread of this client calls this.
+         */
+        void send() {
+            try {
+                while (!socket.isClosed()) {
+                    pending.acquire();
+                    pending.drainPermits();
+                    sendPending();
+                }
+            } catch (InterruptedException e) {
+                // the server is stopping
+            } catch (IOException e) {
+                // the client went away
+            }
+            close();
+        }
+
+        private void sendPending() throws IOException {
+            boolean dirty = false;
+            List<Fired> batch = new ArrayList<>();
+            fired.drainTo(batch);
+            ZonedDateTime zdt = clock.zonedDateTime();
+            if (!zdt.equals(lastSent)) {
+                out.writeByte(TimeProtocol.TIME);
+                TimeProtocol.writeZonedDateTime(out, zdt);
+                lastSent = zdt;
+                dirty = true;
+            }
+            for (Fired alarm : batch) {
+                out.writeByte(TimeProtocol.FIRE);
+                out.writeInt(alarm.id);
+                TimeProtocol.writeZonedDateTime(out, alarm.zdt);
+                dirty = true;
+            }
+            if (dirty) {
+                out.flush();
+            }
+        }
+
+        void close() {
+            if (connections.remove(this)) {
+                proxies.values().forEach(clock::snooze);
+                proxies.clear();
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // ignore, as the client is gone anyway
+                }
+                fired.clear();
+                pending.release();
+            }
+        }
+
+        private AlarmClockListener proxy(int id) {
+            return zdt -> {
+                if (fired.offer(new Fired(id, zdt))) {
+                    pending.release();
+                } else {
+                    close();
+                }
+            };
+        }
+
+        private void alarm(AlarmClockListener proxy, Temporal temporal) {
+            if (temporal == null) {
+                clock.alarm(proxy);
+            } else if (temporal instanceof LocalDate) {
+                clock.alarm(proxy, (LocalDate) temporal);
+            } else if (temporal instanceof LocalTime) {
+                clock.alarm(proxy, (LocalTime) temporal);
+            } else {
+                clock.alarm(proxy, (LocalDateTime) temporal);
+            }
+        }
+
+        private void snooze(int id, Temporal temporal) {
+            AlarmClockListener proxy = proxies.get(id);
+            if (proxy == null) {
+                return;
+            }
+            if (temporal == null) {
+                proxies.remove(id);
+                clock.snooze(proxy);
+            } else if (temporal instanceof LocalDate) {
+                clock.snooze(proxy, (LocalDate) temporal);
+            } else if (temporal instanceof LocalTime) {
+                clock.snooze(proxy, (LocalTime) temporal);
+            } else {
+                clock.snooze(proxy, (LocalDateTime) temporal);
+            }
+        }
+    }
+
+    /**
+     * A remote alarm pending to be sent.
+     */
+    private static final class Fired {
+
+        private final int id;
+        private final ZonedDateTime zdt;
+
+        Fired(int id, ZonedDateTime zdt) {
+            this.id = id;
+            this.zdt = zdt;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import java.util.function.Consumer;
+
+/**
+ * A hierarchical timing wheel of deadlines in epoch milliseconds, e.g. for
+ * {@link ExpiringCache}. <br>
+ * The levels have buckets of 1 ms, 64 ms, about 4 seconds, 4 minutes, 4.7 hours, and a
+ * final bucket for deadlines more than 12 days ahead. Nodes are linked into their bucket
+ * directly, so scheduling and cancelling are O(1). Advancing visits at most every bucket
+ * once per level, plus the nodes in the visited buckets, so a large jump in time, e.g. by
+ * {@link FixedClock#offset(java.time.Duration)}, does not step through each millisecond.
+ * <br>
+ * This is not thread-safe, and callers are expected to guard it.
+ *
+ * @param <N> the type of the nodes
+ */
+final class TimingWheel<N extends TimingWheel.Node> {
+
+    private static final int[] BUCKETS = { 64, 64, 64, 64, 64, 1 };
+    private static final int[] SHIFTS = { 0, 6, 12, 18, 24, 30 };
+
+    private final Node[][] wheel = new Node[BUCKETS.length][];
+    private long time;
+    private int size;
+
+    /**
+     * A node to schedule, which can only be in one wheel at a time.
+     */
+    static class Node {
+
+        private long deadline;
+        private Node previous;
+        private Node next;
+
+        /**
+         * @return the deadline, in epoch milliseconds
+         */
+        final long getDeadline() {
+            return deadline;
+        }
+
+        /**
+         * @return {@code true} if scheduled in a wheel
+         */
+        final boolean isScheduled() {
+            return next != null && next != this;
+        }
+
+        private void unlink() {
+            previous.next = next;
+            next.previous = previous;
+            previous = null;
+            next = null;
+        }
+    }
+
+    /**
+     * @param now the current epoch milliseconds
+     */
+    TimingWheel(long now) {
+        this.time = now;
+        for (int i = 0; i < BUCKETS.length; i++) {
+            wheel[i] = new Node[BUCKETS[i]];
+            for (int j = 0; j < BUCKETS[i]; j++) {
+                Node sentinel = new Node();
+                sentinel.previous = sentinel;
+                sentinel.next = sentinel;
+                wheel[i][j] = sentinel;
+            }
+        }
+    }
+
+    /**
+     * @return the epoch milliseconds the wheel was last advanced to
+     */
+    long time() {
+        return time;
+    }
+
+    /**
+     * @return the number of scheduled nodes
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Schedules the node, rescheduling it if it is already scheduled.
+     *
+     * @param scheduled the node to schedule
+     * @param deadline  the deadline, in epoch milliseconds
+     */
+    void schedule(N scheduled, long deadline) {
+        Node node = scheduled;
+        if (node.isScheduled()) {
+            node.unlink();
+            size--;
+        }
+        node.deadline = deadline;
+        link(node);
+        size++;
+    }
+
+    /**
+     * Cancels the node, if scheduled.
+     *
+     * @param cancelled the node to cancel
+     * @return {@code true} if it was scheduled
+     */
+    boolean cancel(N cancelled) {
+        Node node = cancelled;
+        if (!node.isScheduled()) {
+            return false;
+        }
+        node.unlink();
+        size--;
+        return true;
+    }
+
+    /**
+     * Advances the wheel, removing the nodes whose deadlines are at or before
+     * {@code now}. <br>
+     * Moving back in time is allowed, and nodes then expire once their deadlines are
+     * reached again.
+     *
+     * @param now     the current epoch milliseconds
+     * @param expired the callback for each expired node, which may schedule nodes again
+     * @return the number of expired nodes
+     */
+    int advance(long now, Consumer<? super N> expired) {
+        long previous = time;
+        time = now;
+        int result = 0;
+        for (int i = 0; i < SHIFTS.length; i++) {
+            long previousTicks = ticks(previous, i);
+            long delta = ticks(now, i) - previousTicks;
+            if (delta < 0 || (delta == 0 && i > 0)) {
+                // the current bucket is always visited, for overdue nodes
+                break;
+            }
+            result += expire(i, previousTicks, delta, expired);
+        }
+        return result;
+    }
+
+    /**
+     * @return the nodes expired in the buckets of the level from the previous ticks
+     */
+    @SuppressWarnings("unchecked")
+    private int expire(int level, long previousTicks, long delta,
+            Consumer<? super N> expired) {
+        Node[] buckets = wheel[level];
+        int mask = buckets.length - 1;
+        int steps = (int) Math.min(1 + delta, buckets.length);
+        int start = (int) (previousTicks & mask);
+        int result = 0;
+        for (int i = start; i < start + steps; i++) {
+            Node sentinel = buckets[i & mask];
+            Node node = sentinel.next;
+            sentinel.previous = sentinel;
+            sentinel.next = sentinel;
+            while (node != sentinel) {
+                Node next = node.next;
+                node.previous = null;
+                node.next = null;
+                if (node.deadline - time <= 0) {
+                    size--;
+                    result++;
+                    expired.accept((N) node);
+                } else {
+                    link(node);
+                }
+                node = next;
+            }
+        }
+        return result;
+    }
+
+    private void link(Node node) {
+        Node sentinel = bucketOf(node.deadline);
+        node.previous = sentinel.previous;
+        node.next = sentinel;
+        sentinel.previous.next = node;
+        sentinel.previous = node;
+    }
+
+    private Node bucketOf(long deadline) {
+        long delta = deadline - time;
+        if (delta <= 0) {
+            // overdue, so expire on the next advance
+            return wheel[0][(int) (ticks(time, 0) & (BUCKETS[0] - 1))];
+        }
+        int last = BUCKETS.length - 1;
+        for (int i = 0; i < last; i++) {
+            if (delta < 1L << SHIFTS[i + 1]) {
+                return wheel[i][(int) (ticks(deadline, i) & (BUCKETS[i] - 1))];
+            }
+        }
+        return wheel[last][0];
+    }
+
+    /**
+     * Shifts the milliseconds as unsigned values, so that instants before the epoch are
+     * ordered correctly.
+     */
+    private static long ticks(long millis, int level) {
+        return (millis ^ Long.MIN_VALUE) >>> SHIFTS[level];
+    }
+}
@@ -23,6 +23,8 @@ import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 /**
  * Specifies a form of clock that provides zoned and non-zoned dates and times.
@@ -64,6 +66,17 @@ public interface WallClock {
      */
     Instant instant();
 
+    /**
+     * For compatibility with {@link Clock#millis()}. <br>
+     * Implementations are encouraged to override this to avoid creating an intermediate
+     * {@link Instant}.
+     *
+     * @return the current millisecond instant, measured from the epoch
+     */
+    default long millis() {
+        return instant().toEpochMilli();
+    }
+
     /**
      * For compatibility with {@link Clock#getZone()}. <br>
      * This is to ensure that even implementations that does not extend from {@link Clock}
@@ -82,4 +95,45 @@ public interface WallClock {
      *         {@link WallClock} with the duration added
      */
     WallClock offset(Duration duration);
+
+    /**
+     * Provides the instants from the current instant (inclusive) to the duration after it
+     * (exclusive), at a fixed step. <br>
+     * The stream splits evenly, so it is suitable for {@link Stream#parallel()}.
+     *
+     * @param range the duration after the current instant to stop before, not negative
+     * @param step  the duration between instants, positive
+     * @return a sequential stream of the instants
+     * @see TimeSeries
+     */
+    default Stream<Instant> instants(Duration range, Duration step) {
+        return TimeSeries.of(instant(), range, step).instants();
+    }
+
+    /**
+     * Provides the date and times from the current instant (inclusive) to the duration
+     * after it (exclusive), at a fixed step, at the time-zone of this.
+     *
+     * @param range the duration after the current instant to stop before, not negative
+     * @param step  the duration between instants, positive
+     * @return a sequential stream of the date and times
+     * @see TimeSeries
+     */
+    default Stream<ZonedDateTime> zonedDateTimes(Duration range, Duration step) {
+        return TimeSeries.of(instant(), range, step).zonedDateTimes(getZone());
+    }
+
+    /**
+     * Provides the instants from the current instant (inclusive) to the duration after it
+     * (exclusive), at a fixed step, in milliseconds from the epoch. <br>
+     * The stream does not allocate per element.
+     *
+     * @param range the duration after the current instant to stop before, not negative
+     * @param step  the duration between instants, positive
+     * @return a sequential stream of the epoch milliseconds
+     * @see TimeSeries
+     */
+    default LongStream epochMillis(Duration range, Duration step) {
+        return TimeSeries.of(instant(), range, step).epochMillis();
+    }
 }
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Objects;
+
+import ch.qos.logback.classic.pattern.ClassicConverter;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+
+/**
+ * A logback converter that renders timestamps from a {@link WallClock} instead of the
+ * logging event. <br>
+ * Register it with {@code <conversionRule conversionWord="wallclock"
+ * converterClass="com.ikueb.wallclock.WallClockConverter" />} and use it as
+ * {@code %wallclock} or {@code %wallclock{pattern}}, where the optional pattern is a
+ * {@link DateTimeFormatter} pattern. A trailing {@code SSS} field (optionally preceded by a
+ * single separator character) is rendered arithmetically, so that the rest of the pattern
+ * only has to be formatted once per second and zone. A pattern with any other sub-second
+ * field ({@code S}, {@code n}, {@code N} or {@code A}), such as one ending with a longer
+ * {@code SSSS} fraction, is formatted in full for every event.
+ *
+ * @implNote The clock is shared by all instances of this converter, as logback creates
+ * them reflectively. Use {@link TickingClock#atUTC()} (the default) in production, and a
+ * {@link FixedClock} via {@link #setClock(WallClock)} for deterministic output in tests.
+ */
+public final class WallClockConverter extends ClassicConverter {
+
+    /**
+     * The default pattern, matching logback's own ISO-8601 rendering.
+     */
+    public static final String DEFAULT_PATTERN = "yyyy-MM-dd HH:mm:ss,SSS";
+    private static final String MILLIS = "SSS";
+    private static final String RESERVED = "'[]{}#";
+    private static final String SUB_SECOND = "SnNA";
+    private static volatile WallClock clock = TickingClock.atUTC();
+
+    private DateTimeFormatter formatter;
+    private String separator;
+    private boolean withMillis;
+    private boolean perSecond;
+    private volatile Second cache = Second.EMPTY;
+
+    /**
+     * Sets the clock to render timestamps from.
+     *
+     * @param wallClock the clock to use, not null
+     */
+    public static void setClock(WallClock wallClock) {
+        clock = Objects.requireNonNull(wallClock);
+    }
+
+    /**
+     * @return the clock timestamps are rendered from
+     */
+    public static WallClock getClock() {
+        return clock;
+    }
+
+    @Override
+    public void start() {
+        String pattern = getFirstOption();
+        if (pattern == null || pattern.isEmpty()) {
+            pattern = DEFAULT_PATTERN;
+        }
+        separator = "";
+        withMillis = false;
+        String perSecondPattern = pattern;
+        if (pattern.endsWith(MILLIS)) {
+            String head = pattern.substring(0, pattern.length() - MILLIS.length());
+            if (head.isEmpty() || isField(head, 1)) {
+                perSecondPattern = head;
+                withMillis = true;
+            } else if (isSeparator(head.charAt(head.length() - 1))
+                    && (head.length() == 1 || isField(head, 2))) {
+                separator = head.substring(head.length() - 1);
+                perSecondPattern = head.substring(0, head.length() - 1);
+                withMillis = true;
+            }
+        }
+        perSecond = !hasSubSecondField(perSecondPattern);
+        if (perSecond) {
+            pattern = perSecondPattern;
+        } else {
+            separator = "";
+            withMillis = false;
+        }
+        try {
+            formatter = DateTimeFormatter.ofPattern(pattern);
+        } catch (IllegalArgumentException e) {
+            addError("Could not instantiate formatter with pattern " + pattern, e);
+            formatter = DateTimeFormatter.ofPattern(
+                    DEFAULT_PATTERN.substring(0, DEFAULT_PATTERN.length() - 4));
+            separator = ",";
+            withMillis = true;
+            perSecond = true;
+        }
+        super.start();
+    }
+
+    @Override
+    public String convert(ILoggingEvent event) {
+        WallClock current = clock;
+        if (!perSecond) {
+            return formatter.format(current.zonedDateTime());
+        }
+        long millis = current.millis();
+        long second = Math.floorDiv(millis, 1000);
+        ZoneId zone = current.getZone();
+        Second cached = cache;
+        if (cached.second != second || cached.clock != current || !zone.equals(cached.zone)) {
+            cached = new Second(current, zone, second,
+                    formatter.withZone(zone).format(Instant.ofEpochSecond(second)));
+            cache = cached;
+        }
+        if (!withMillis) {
+            return cached.text;
+        }
+        int remainder = (int) Math.floorMod(millis, 1000);
+        return new StringBuilder(cached.text.length() + separator.length() + 3)
+                .append(cached.text).append(separator)
+                .append((char) ('0' + remainder / 100))
+                .append((char) ('0' + remainder / 10 % 10))
+                .append((char) ('0' + remainder % 10)).toString();
+    }
+
+    /**
+     * @param head the pattern preceding the trailing {@code SSS}
+     * @param fromEnd the position of the character to check, counting back from the end
+     * @return {@code true} if that character is a pattern letter other than {@code S}, so
+     *         that the trailing {@code SSS} is exactly the millisecond field
+     */
+    private static boolean isField(String head, int fromEnd) {
+        char c = head.charAt(head.length() - fromEnd);
+        return Character.isLetter(c) && c != 'S';
+    }
+
+    /**
+     * @param pattern the pattern to check
+     * @return {@code true} if it has a pattern letter, outside of quoted text, for a field
+     *         that changes within a second
+     */
+    private static boolean hasSubSecondField(String pattern) {
+        boolean quoted = false;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (!quoted && SUB_SECOND.indexOf(c) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSeparator(char c) {
+        return !Character.isLetter(c) && RESERVED.indexOf(c) < 0;
+    }
+
+    /**
+     * The rendering of a whole second for a given clock and zone.
+     */
+    private static final class Second {
+
+        private static final Second EMPTY = new Second(null, null, Long.MIN_VALUE, "");
+
+        private final WallClock clock;
+        private final ZoneId zone;
+        private final long second;
+        private final String text;
+
+        private Second(WallClock clock, ZoneId zone, long second, String text) {
+            this.clock = clock;
+            this.zone = zone;
+            this.second = second;
+            this.text = text;
+        }
+    }
+}
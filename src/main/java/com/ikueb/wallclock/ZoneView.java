@@ -0,0 +1,174 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Objects;
+
+/**
+ * A live view of an {@link AbstractFixedWallClock} at another time-zone. <br>
+ * Unlike {@link AbstractFixedWallClock#withZone(ZoneId)}, which returns a detached copy,
+ * the view shares the instant of the underlying clock, so setting either one is seen by
+ * both. Dates and times set through the view are interpreted at its time-zone.
+ *
+ * @implNote The zoned representation is cached together with the version of the
+ * underlying clock it was converted from, so it is only converted again once the
+ * underlying clock is set.
+ */
+public final class ZoneView extends Clock implements FixedWallClock {
+
+    private final AbstractFixedWallClock clock;
+    private final ZoneId zone;
+    private volatile Snapshot snapshot;
+
+    /**
+     * The zoned representation as of a version.
+     */
+    private static final class Snapshot {
+
+        private final long version;
+        private final ZonedDateTime zdt;
+
+        Snapshot(long version, ZonedDateTime zdt) {
+            this.version = version;
+            this.zdt = zdt;
+        }
+    }
+
+    /**
+     * @param clock the clock to view, not null
+     * @param zone  the time-zone to view at, not null
+     */
+    public ZoneView(AbstractFixedWallClock clock, ZoneId zone) {
+        this.clock = Objects.requireNonNull(clock);
+        this.zone = Objects.requireNonNull(zone);
+    }
+
+    /**
+     * @return the underlying clock
+     */
+    public AbstractFixedWallClock getClock() {
+        return clock;
+    }
+
+    @Override
+    public ZonedDateTime zonedDateTime() {
+        long version = clock.version();
+        Snapshot current = snapshot;
+        if (current == null || current.version != version) {
+            current = new Snapshot(version,
+                    clock.zonedDateTime().withZoneSameInstant(zone));
+            snapshot = current;
+        }
+        return current.zdt;
+    }
+
+    @Override
+    public Instant instant() {
+        return clock.instant();
+    }
+
+    @Override
+    public long millis() {
+        return clock.millis();
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    /**
+     * @param zoneId the time-zone to view at, not null
+     * @return a view of the same underlying clock at the given time-zone
+     */
+    @Override
+    public ZoneView withZone(ZoneId zoneId) {
+        return zoneId.equals(zone) ? this : new ZoneView(clock, zoneId);
+    }
+
+    /**
+     * Sets the date at this time-zone, the same day is treated as no-op.
+     *
+     * @param date the date to set, not null
+     * @return this instance
+     */
+    @Override
+    public ZoneView setDate(LocalDate date) {
+        if (!date.equals(date())) {
+            set(zonedDateTime().with(date));
+        }
+        return this;
+    }
+
+    /**
+     * Sets the time at this time-zone, the same time is treated as no-op.
+     *
+     * @param time the time to set, not null
+     * @return this instance
+     */
+    @Override
+    public ZoneView setTime(LocalTime time) {
+        if (!time.equals(time())) {
+            set(zonedDateTime().with(time));
+        }
+        return this;
+    }
+
+    /**
+     * Sets the date and time at this time-zone, the same date and time is treated as
+     * no-op.
+     *
+     * @param dateTime the date and time to set, not null
+     * @return this instance
+     */
+    @Override
+    public ZoneView setDateTime(LocalDateTime dateTime) {
+        if (!dateTime.equals(dateTime())) {
+            set(zonedDateTime().with(dateTime));
+        }
+        return this;
+    }
+
+    /**
+     * Adds the duration to the underlying clock, zero-length durations are treated as
+     * no-op.
+     *
+     * @param duration the duration to add, not null
+     * @return this instance
+     */
+    @Override
+    public ZoneView offset(Duration duration) {
+        clock.offset(duration);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "@" + zonedDateTime();
+    }
+
+    private void set(ZonedDateTime source) {
+        clock.set(source.withZoneSameInstant(clock.getZone()));
+    }
+}
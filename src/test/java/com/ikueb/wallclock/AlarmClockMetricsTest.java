@@ -0,0 +1,192 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import static java.time.ZoneOffset.UTC;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.testng.annotations.Test;
+
+public class AlarmClockMetricsTest {
+
+    private static final LocalDateTime DATETIME = LocalDateTime.of(2016, 1, 1, 0, 0);
+
+    private static final class NamedListener implements AlarmClockListener {
+
+        private final String name;
+        private final long sleepMillis;
+
+        NamedListener(String name, long sleepMillis) {
+            this.name = name;
+            this.sleepMillis = sleepMillis;
+        }
+
+        @Override
+        public void alarmTriggered(ZonedDateTime zdt) {
+            if (sleepMillis > 0) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(sleepMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    @Test
+    public void testMatchesEvaluated() {
+        FixedAlarmClock clock = new FixedAlarmClock(DATETIME, UTC);
+        AlarmClockMetrics metrics = clock.instrument();
+        AlarmClockListener listener = zdt -> {};
+        for (int i = 1; i <= 5; i++) {
+            clock.alarm(listener, DATETIME.plusHours(i));
+        }
+        clock.alarm(zdt -> {}, LocalTime.NOON);
+        clock.alarm(zdt -> {});
+        clock.offset(Duration.ofHours(1));
+        assertThat(metrics.matchesEvaluated(), equalTo(3L + 3 + 1));
+        assertThat(metrics.alarmsFired(), equalTo(2L));
+    }
+
+    @Test
+    public void testMetrics() {
+        FixedAlarmClock clock = new FixedAlarmClock(DATETIME, UTC);
+        assertThat(clock.metrics().isPresent(), equalTo(false));
+        AlarmClockMetrics metrics = clock.instrument();
+        assertThat(clock.instrument(), sameInstance(metrics));
+        NamedListener fast = new NamedListener("fast", 0);
+        NamedListener slow = new NamedListener("slow", 5);
+        clock.alarm(fast);
+        clock.alarm(slow, DATETIME.toLocalDate().plusDays(1));
+        clock.alarm(slow, LocalTime.NOON);
+        clock.alarm(slow, DATETIME.plusHours(1));
+        clock.setDateTime(DATETIME.plusHours(1));
+        clock.setDate(LocalDate.of(2016, 1, 2));
+        clock.setTime(LocalTime.NOON);
+        assertThat(metrics.setCalls(), equalTo(3L));
+        assertThat(metrics.matchesEvaluated(), equalTo(3L + 3 * 3));
+        assertThat(metrics.alarmsFired(), equalTo(3L + 4));
+        assertThat(metrics.registrations().get(fast), equalTo(1));
+        assertThat(metrics.registrations().get(slow), equalTo(3));
+        assertThat(metrics.dispatchLatency().count(), equalTo(6L));
+        assertThat(metrics.dispatchLatency().max(),
+                greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(5)));
+        assertThat(metrics.slowestListeners(2).keySet(), contains(slow, fast));
+        assertThat(metrics.slowestListeners(1).keySet(), contains(slow));
+        clock.snooze(slow);
+        assertThat(metrics.slowestListeners(2).keySet(), contains(fast));
+        metrics.reset();
+        assertThat(metrics.setCalls(), equalTo(0L));
+        assertThat(metrics.dispatchLatency().count(), equalTo(0L));
+        clock.uninstrument();
+        assertThat(clock.metrics().isPresent(), equalTo(false));
+    }
+
+    @Test
+    public void testUnregisteredListenersAreForgotten() {
+        FixedAlarmClock clock = new FixedAlarmClock(DATETIME, UTC);
+        AlarmClockMetrics metrics = clock.instrument();
+        NamedListener byTime = new NamedListener("byTime", 0);
+        NamedListener weak = new NamedListener("weak", 0);
+        NamedListener restored = new NamedListener("restored", 0);
+        clock.alarm(byTime, LocalTime.NOON);
+        clock.alarm(byTime, LocalTime.MIDNIGHT);
+        clock.alarm(weak);
+        FixedAlarmClock.Checkpoint checkpoint = clock.checkpoint();
+        clock.alarm(restored);
+        clock.setTime(LocalTime.NOON);
+        assertThat(metrics.slowestListeners(3).keySet(),
+                containsInAnyOrder(byTime, weak, restored));
+        clock.snooze(byTime, LocalTime.NOON);
+        assertThat(metrics.slowestListeners(3).keySet(),
+                containsInAnyOrder(byTime, weak, restored));
+        clock.snooze(byTime, LocalTime.MIDNIGHT);
+        assertThat(metrics.slowestListeners(3).keySet(),
+                containsInAnyOrder(weak, restored));
+        clock.weaken(weak);
+        assertThat(metrics.slowestListeners(3).keySet(), contains(restored));
+        clock.restore(checkpoint);
+        assertThat(metrics.slowestListeners(3).isEmpty(), equalTo(true));
+    }
+
+    @Test
+    public void testMBean() throws Exception {
+        FixedAlarmClock clock = new FixedAlarmClock(DATETIME, UTC);
+        AlarmClockMetrics metrics = clock.instrument();
+        clock.alarm(new NamedListener("listener", 0));
+        clock.offset(Duration.ofSeconds(1));
+        ObjectName name = metrics.registerMBean();
+        assertThat(metrics.registerMBean(), equalTo(name));
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        assertThat(server.getAttribute(name, "SetCalls"), equalTo(1L));
+        assertThat(server.getAttribute(name, "AlarmsFired"), equalTo(1L));
+        assertThat(metrics.getRegistrations(),
+                equalTo(Collections.singletonMap("listener", 1)));
+        assertThat(server.isRegistered(name), equalTo(true));
+        clock.uninstrument();
+        assertThat(server.isRegistered(name), equalTo(false));
+    }
+
+    @Test
+    public void testHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertThat(histogram.valueAtPercentile(50), equalTo(0L));
+        LongStream.rangeClosed(1, 100_000).forEach(histogram::record);
+        assertThat(histogram.count(), equalTo(100_000L));
+        assertThat(histogram.max(), equalTo(100_000L));
+        Map<Double, Long> expected = new LinkedHashMap<>();
+        expected.put(50d, 50_000L);
+        expected.put(99d, 99_000L);
+        expected.put(99.9, 99_900L);
+        expected.forEach((percentile, value) -> {
+            long actual = histogram.valueAtPercentile(percentile);
+            assertThat(actual, greaterThanOrEqualTo(value));
+            assertThat(actual, lessThanOrEqualTo((long) (value * 1.04)));
+        });
+        assertThat(histogram.valueAtPercentile(100), equalTo(100_000L));
+        LongStream.range(0, 64).forEach(v -> assertThat(
+                LatencyHistogram.highestEquivalentValue(LatencyHistogram.indexOf(v)),
+                equalTo(v)));
+        assertThat(LatencyHistogram.highestEquivalentValue(
+                LatencyHistogram.indexOf(Long.MAX_VALUE)), equalTo(Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import static java.time.ZoneOffset.UTC;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.testng.annotations.Test;
+
+public class AlarmDispatchOrderTest {
+
+    private static final LocalDateTime DATETIME = LocalDateTime.of(2016, 1, 1, 0, 0);
+
+    private static final class OrderedListener implements AlarmClockListener {
+
+        private final int id;
+        private final List<Integer> triggered;
+
+        OrderedListener(int id, List<Integer> triggered) {
+            this.id = id;
+            this.triggered = triggered;
+        }
+
+        @Override
+        public void alarmTriggered(ZonedDateTime zdt) {
+            triggered.add(id);
+        }
+
+        @Override
+        public String toString() {
+            return "listener-" + id;
+        }
+    }
+
+    private static List<Integer> range(int from, int to) {
+        return IntStream.range(from, to).boxed().collect(Collectors.toList());
+    }
+
+    @Test
+    public void testRegistrationOrder() {
+        FixedAlarmClock clock = new FixedAlarmClock(DATETIME, UTC);
+        List<Integer> triggered = new ArrayList<>();
+        List<OrderedListener> listeners = range(0, 1_000).stream()
+                .map(i -> new OrderedListener(i, triggered)).collect(Collectors.toList());
+        for (OrderedListener listener : listeners) {
+            if (listener.id % 2 == 0) {
+                clock.alarm(listener);
+            } else {
+                clock.alarm(listener, DATETIME.plusSeconds(1));
+            }
+        }
+        for (int i = 0; i < 3; i++) {
+            triggered.clear();
+            clock.setDateTime(DATETIME.plusSeconds(1 - i % 2));
+            if (i % 2 == 0) {
+                assertThat(triggered, equalTo(range(0, 1_000)));
+            } else {
+                assertThat(triggered, equalTo(range(0, 500).stream().map(x -> x * 2)
+                        .collect(Collectors.toList())));
+            }
+        }
+        assertThat(new ArrayList<>(clock.registrations().keySet()), equalTo(listeners));
+    }
+
+    @Test
+    public void testPriorities() {
+        FixedAlarmClock clock = new FixedAlarmClock(DATETIME, UTC);
+        List<Integer> triggered = new ArrayList<>();
+        List<OrderedListener> listeners = range(0, 5).stream()
+                .map(i -> new OrderedListener(i, triggered)).collect(Collectors.toList());
+        listeners.forEach(clock::alarm);
+        assertThat(clock.prioritize(listeners.get(3), 10), is(true));
+        assertThat(clock.prioritize(listeners.get(1), 10), is(true));
+        assertThat(clock.prioritize(listeners.get(4), -1), is(true));
+        assertThat(clock.prioritize(listeners.get(2), Integer.MIN_VALUE), is(true));
+        clock.offset(Duration.ofSeconds(1));
+        assertThat(triggered, contains(1, 3, 0, 4, 2));
+        triggered.clear();
+        clock.prioritize(listeners.get(3), 0);
+        clock.offset(Duration.ofSeconds(1));
+        assertThat(triggered, contains(1, 0, 3, 4, 2));
+    }
+
+    @Test
+    public void testReregistration() {
+        FixedAlarmClock clock = new FixedAlarmClock(DATETIME, UTC);
+        List<Integer> triggered = new ArrayList<>();
+        List<OrderedListener> listeners = range(0, 3).stream()
+                .map(i -> new OrderedListener(i, triggered)).collect(Collectors.toList());
+        listeners.forEach(clock::alarm);
+        clock.alarm(listeners.get(0), DATETIME.plusSeconds(1));
+        clock.snooze(listeners.get(1));
+        assertThat(clock.prioritize(listeners.get(1), 1), is(false));
+        clock.alarm(listeners.get(1));
+        clock.offset(Duration.ofSeconds(1));
+        assertThat(triggered, contains(0, 2, 1));
+        triggered.clear();
+        clock.snooze(listeners.get(0), DATETIME.plusSeconds(1));
+        clock.alarm(listeners.get(0));
+        clock.offset(Duration.ofSeconds(1));
+        assertThat(triggered, contains(2, 1, 0));
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import static java.time.ZoneOffset.UTC;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.testng.Assert.fail;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+public class AlarmScheduleTest {
+
+    private static final LocalDateTime DATETIME = LocalDateTime.of(2016, 1, 1, 0, 0);
+    private static final AlarmClockListener EVERY_UPDATE = zdt -> {};
+
+    @Test
+    public void testNext() {
+        FixedAlarmClock clock = new FixedAlarmClock(DATETIME.plusHours(12), UTC);
+        AlarmSchedule schedule = clock.schedule();
+        AlarmClockListener listener = zdt -> {};
+        clock.alarm(EVERY_UPDATE);
+        assertThat(schedule.next(), equalTo(Optional.empty()));
+        clock.alarm(listener, DATETIME.plusDays(3));
+        assertThat(schedule.next(), equalTo(Optional.of(DATETIME.plusDays(3))));
+        clock.alarm(listener, LocalDate.of(2016, 1, 2));
+        assertThat(schedule.next(), equalTo(Optional.of(DATETIME.plusDays(1))));
+        clock.alarm(listener, LocalTime.of(6, 0));
+        assertThat(schedule.next(), equalTo(Optional.of(DATETIME.plusDays(1))));
+        clock.alarm(listener, LocalTime.of(18, 0));
+        assertThat(schedule.next(), equalTo(Optional.of(DATETIME.plusHours(18))));
+        assertThat(schedule.next(DATETIME.plusHours(18)),
+                equalTo(Optional.of(DATETIME.plusDays(1))));
+        assertThat(schedule.next(DATETIME.plusDays(1)),
+                equalTo(Optional.of(DATETIME.plusDays(1))));
+        assertThat(schedule.next(DATETIME.plusDays(2)),
+                equalTo(Optional.of(DATETIME.plusDays(2).plusHours(6))));
+        clock.snooze(listener, LocalTime.of(18, 0));
+        clock.snooze(listener, LocalTime.of(6, 0));
+        assertThat(schedule.next(DATETIME.plusDays(2)),
+                equalTo(Optional.of(DATETIME.plusDays(3))));
+        assertThat(schedule.size(), equalTo(2));
+        clock.snooze(listener);
+        assertThat(schedule.size(), equalTo(0));
+        assertThat(schedule.next(), equalTo(Optional.empty()));
+    }
+
+    @Test
+    public void testNextOnAlarmedDate() {
+        FixedAlarmClock clock = new FixedAlarmClock(DATETIME.plusHours(12), UTC);
+        AlarmSchedule schedule = clock.schedule();
+        AlarmClockListener listener = zdt -> {};
+        clock.alarm(listener, DATETIME.plusHours(18));
+        clock.alarm(listener, DATETIME.plusHours(12));
+        assertThat(schedule.next(), equalTo(Optional.of(DATETIME.plusHours(18))));
+        clock.alarm(listener, DATETIME.toLocalDate());
+        assertThat(schedule.next(), equalTo(Optional.of(DATETIME.plusHours(12))));
+        assertThat(schedule.next(DATETIME.plusDays(1)), equalTo(Optional.empty()));
+        clock.snooze(listener, DATETIME.toLocalDate());
+        assertThat(schedule.next(), equalTo(Optional.of(DATETIME.plusHours(18))));
+    }
+
+    @Test
+    public void testAlarms() {
+        FixedAlarmClock clock = new FixedAlarmClock(DATETIME, UTC);
+        AlarmClockListener listener = zdt -> {};
+        AlarmClockListener other = zdt -> {};
+        clock.alarm(listener, LocalTime.of(9, 0));
+        clock.alarm(listener, LocalTime.of(17, 0));
+        clock.alarm(listener, DATETIME.plusDays(1).plusHours(9));
+        clock.alarm(listener, DATETIME.plusDays(1).plusHours(12));
+        clock.alarm(listener, LocalDate.of(2016, 1, 3));
+        clock.alarm(other, DATETIME.plusDays(1).plusHours(10));
+        assertThat(clock.schedule().alarms(listener, DATETIME.plusHours(12),
+                DATETIME.plusDays(2).plusHours(9)), contains(
+                        DATETIME.plusHours(17),
+                        DATETIME.plusDays(1).plusHours(9),
+                        DATETIME.plusDays(1).plusHours(9),
+                        DATETIME.plusDays(1).plusHours(12),
+                        DATETIME.plusDays(1).plusHours(17),
+                        DATETIME.plusDays(2)));
+        assertThat(clock.schedule().alarms(other, DATETIME, DATETIME.plusDays(7)),
+                contains(DATETIME.plusDays(1).plusHours(10)));
+        assertThat(clock.schedule().alarms(EVERY_UPDATE, DATETIME, DATETIME.plusDays(7)),
+                empty());
+    }
+
+    @Test
+    public void testCountAgainstScan() {
+        Random random = new Random(7);
+        FixedAlarmClock clock = new FixedAlarmClock(DATETIME, UTC);
+        Map<AlarmClockListener, List<Temporal>> registered = new HashMap<>();
+        for (int i = 0; i < 50; i++) {
+            AlarmClockListener listener = new AlarmClockListener() {
+                @Override
+                public void alarmTriggered(ZonedDateTime zdt) {
+                    // no-op
+                }
+            };
+            List<Temporal> times = new ArrayList<>();
+            for (int j = 0; j < 20; j++) {
+                LocalDateTime at = DATETIME.plusMinutes(random.nextInt(10 * 24 * 60));
+                Temporal time = j % 3 == 0 ? at.toLocalDate()
+                        : j % 3 == 1 ? at.toLocalTime() : at;
+                register(clock, listener, time);
+                if (!times.contains(time)) {
+                    times.add(time);
+                }
+            }
+            registered.put(listener, times);
+        }
+        for (int i = 0; i < 200; i++) {
+            LocalDateTime from = DATETIME.plusMinutes(random.nextInt(12 * 24 * 60));
+            LocalDateTime to = from.plusMinutes(random.nextInt(3 * 24 * 60));
+            long expected = 0;
+            for (Map.Entry<AlarmClockListener, List<Temporal>> entry : registered.entrySet()) {
+                List<LocalDateTime> scanned = scan(entry.getValue(), from, to);
+                expected += scanned.size();
+                assertThat(clock.schedule().alarms(entry.getKey(), from, to),
+                        equalTo(scanned));
+            }
+            assertThat(clock.schedule().count(from, to), equalTo(expected));
+        }
+    }
+
+    @Test
+    public void testAlarmsLimit() {
+        FixedAlarmClock clock = new FixedAlarmClock(DATETIME, UTC);
+        AlarmClockListener listener = zdt -> {};
+        clock.alarm(listener, LocalTime.NOON);
+        clock.alarm(listener, DATETIME);
+        AlarmSchedule schedule = clock.schedule();
+        LocalDateTime to = DATETIME.plusDays(AlarmSchedule.MAX_ALARMS - 1);
+        assertThat(schedule.alarms(listener, DATETIME, to).size(),
+                equalTo(AlarmSchedule.MAX_ALARMS));
+        try {
+            schedule.alarms(listener, DATETIME, to.plusDays(1));
+            fail("Expected the window to be rejected.");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertThat(schedule.count(LocalDateTime.MIN, LocalDateTime.MAX),
+                equalTo(ChronoUnit.DAYS.between(LocalDate.MIN, LocalDate.MAX) + 2));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidWindow() {
+        new FixedAlarmClock(DATETIME, UTC).schedule().count(DATETIME, DATETIME.minusDays(1));
+    }
+
+    private static void register(FixedAlarmClock clock, AlarmClockListener listener,
+            Temporal time) {
+        if (time instanceof LocalDate) {
+            clock.alarm(listener, (LocalDate) time);
+        } else if (time instanceof LocalTime) {
+            clock.alarm(listener, (LocalTime) time);
+        } else {
+            clock.alarm(listener, (LocalDateTime) time);
+        }
+    }
+
+    private static List<LocalDateTime> scan(List<Temporal> times, LocalDateTime from,
+            LocalDateTime to) {
+        List<LocalDateTime> result = new ArrayList<>();
+        for (Temporal time : times) {
+            if (time instanceof LocalTime) {
+                for (LocalDate date = from.toLocalDate(); !date.isAfter(to.toLocalDate());
+                        date = date.plusDays(1)) {
+                    add(result, date.atTime((LocalTime) time), from, to);
+                }
+            } else {
+                add(result, time instanceof LocalDate ? ((LocalDate) time).atStartOfDay()
+                        : (LocalDateTime) time, from, to);
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private static void add(List<LocalDateTime> result, LocalDateTime at,
+            LocalDateTime from, LocalDateTime to) {
+        if (!at.isBefore(from) && at.isBefore(to)) {
+            result.add(at);
+        }
+    }
+}
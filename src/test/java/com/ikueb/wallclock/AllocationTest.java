@@ -0,0 +1,151 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import static java.time.ZoneOffset.UTC;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Iterator;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+import org.testng.SkipException;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Allocation budgets, in bytes per operation, for the hot paths. <br>
+ * Each operation is run enough times for the JIT compiler to kick in before measuring, and
+ * the best of a few rounds is taken to filter out unrelated allocations, e.g. by the JIT
+ * compiler or profilers. The budgets are upper bounds so that they hold for both
+ * interpreted and compiled code.
+ */
+public class AllocationTest {
+
+    private static final int WARMUP = 50_000;
+    private static final int OPERATIONS = 100_000;
+    private static final int ROUNDS = 5;
+    private static final LocalDateTime DATETIME = LocalDateTime.of(2016, 1, 1, 0, 0);
+    private static final Duration ONE_NANO = Duration.ofNanos(1);
+
+    private static com.sun.management.ThreadMXBean threads;
+    private static volatile long sink;
+
+    private static final class TestCase {
+
+        private final String description;
+        private final LongSupplier operation;
+
+        TestCase(String description, LongSupplier operation) {
+            this.description = description;
+            this.operation = operation;
+        }
+
+        /**
+         * @return the average number of bytes allocated per operation
+         */
+        double measure() {
+            run(WARMUP);
+            long thread = Thread.currentThread().getId();
+            long result = Long.MAX_VALUE;
+            for (int i = 0; i < ROUNDS; i++) {
+                long before = threads.getThreadAllocatedBytes(thread);
+                run(OPERATIONS);
+                result = Math.min(result, threads.getThreadAllocatedBytes(thread) - before);
+            }
+            return (double) result / OPERATIONS;
+        }
+
+        private void run(int count) {
+            long result = 0;
+            for (int i = 0; i < count; i++) {
+                result += operation.getAsLong();
+            }
+            sink = result;
+        }
+
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+
+    @BeforeClass
+    public static void setUp() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)
+                || !((com.sun.management.ThreadMXBean) bean)
+                        .isThreadAllocatedMemorySupported()) {
+            throw new SkipException("Thread allocation counters are not supported.");
+        }
+        threads = (com.sun.management.ThreadMXBean) bean;
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @DataProvider(name = "budgets")
+    public static Iterator<Object[]> getBudgets() {
+        FixedClock fixedClock = new FixedClock(DATETIME, UTC);
+        FixedAlarmClock alarmClock = new FixedAlarmClock(DATETIME, UTC);
+        TickingClock tickingClock = TickingClock.atUTC();
+        ScopedClock scopedClock = new ScopedClock();
+        TimeBuckets buckets = new TimeBuckets(ZoneId.of("America/New_York"));
+        ZoneView zoneView = new ZoneView(fixedClock, ZoneId.of("Asia/Tokyo"));
+        scopedClock.open(fixedClock);
+        FixedAlarmClock dispatchClock = new FixedAlarmClock(DATETIME, UTC);
+        int[] triggered = new int[1];
+        for (int i = 0; i < 10; i++) {
+            AlarmClockListener listener = zdt -> triggered[0]++;
+            dispatchClock.alarm(listener);
+            dispatchClock.alarm(listener, DATETIME.plusSeconds(i));
+        }
+        return Stream.of(
+                test("FixedClock.instant()", () -> fixedClock.instant().getNano(), 0),
+                test("FixedClock.millis()", fixedClock::millis, 0),
+                test("FixedClock.version()", fixedClock::version, 0),
+                test("FixedClock.zonedDateTime()",
+                        () -> fixedClock.zonedDateTime().getNano(), 0),
+                test("ZoneView.zonedDateTime()", () -> zoneView.zonedDateTime().getNano(), 0),
+                test("FixedAlarmClock.instant()", () -> alarmClock.instant().getNano(), 0),
+                test("TickingClock.millis()", tickingClock::millis, 0),
+                test("ScopedClock.millis()", scopedClock::millis, 0),
+                test("TickingClock.instant()", () -> tickingClock.instant().getNano(), 24),
+                test("TimeBuckets.floorDay()",
+                        () -> buckets.floorDay(fixedClock.millis()), 0),
+                test("FixedClock.offset()",
+                        () -> fixedClock.offset(ONE_NANO).millis(), 256),
+                test("FixedAlarmClock.offset()",
+                        () -> alarmClock.offset(ONE_NANO).millis(), 320),
+                test("FixedAlarmClock.offset() with 10 listeners",
+                        () -> dispatchClock.offset(ONE_NANO).millis(), 4_096))
+                .iterator();
+    }
+
+    private static Object[] test(String description, LongSupplier operation,
+            int budget) {
+        return new Object[] { new TestCase(description, operation), budget };
+    }
+
+    @Test(dataProvider = "budgets")
+    public void testBudget(TestCase testCase, int budget) {
+        assertThat(testCase.measure(), lessThanOrEqualTo((double) budget));
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import static java.time.ZoneOffset.UTC;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+public class BusinessCalendarTest {
+
+    private static final List<LocalDate> HOLIDAYS = Arrays.asList(
+            LocalDate.of(2016, 1, 1), LocalDate.of(2016, 12, 26),
+            LocalDate.of(2017, 1, 2), LocalDate.of(2017, 12, 25),
+            LocalDate.of(2018, 1, 1), LocalDate.of(2020, 12, 31));
+    private static final BusinessCalendar CALENDAR = new BusinessCalendar(HOLIDAYS);
+
+    private static LocalDate naive(BusinessCalendar calendar, LocalDate date, long days) {
+        LocalDate result = date;
+        long step = Long.signum(days);
+        for (long remaining = Math.abs(days); remaining > 0;) {
+            result = result.plusDays(step);
+            if (calendar.isBusinessDay(result)) {
+                remaining--;
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testIsBusinessDay() {
+        assertThat(CALENDAR.isBusinessDay(LocalDate.of(2016, 1, 1)), is(false));
+        assertThat(CALENDAR.isBusinessDay(LocalDate.of(2016, 1, 2)), is(false));
+        assertThat(CALENDAR.isBusinessDay(LocalDate.of(2016, 1, 4)), is(true));
+        assertThat(CALENDAR.isBusinessDay(LocalDate.of(2016, 12, 30)), is(true));
+        assertThat(CALENDAR.isBusinessDay(LocalDate.of(2016, 12, 31)), is(false));
+    }
+
+    @Test
+    public void testPlusBusinessDays() {
+        LocalDate friday = LocalDate.of(2016, 12, 23);
+        assertThat(CALENDAR.plusBusinessDays(friday, 0), sameInstance(friday));
+        assertThat(CALENDAR.plusBusinessDays(friday, 1), equalTo(LocalDate.of(2016, 12, 27)));
+        assertThat(CALENDAR.plusBusinessDays(friday, 5), equalTo(LocalDate.of(2017, 1, 3)));
+        assertThat(CALENDAR.plusBusinessDays(LocalDate.of(2017, 1, 3), -5),
+                equalTo(LocalDate.of(2016, 12, 23)));
+        assertThat(CALENDAR.nextBusinessDay(LocalDate.of(2016, 12, 31)),
+                equalTo(LocalDate.of(2017, 1, 3)));
+    }
+
+    @Test
+    public void testAgainstNaive() {
+        BusinessCalendar calendar = new BusinessCalendar(
+                EnumSet.of(DayOfWeek.FRIDAY, DayOfWeek.SATURDAY), HOLIDAYS);
+        Random random = new Random(42);
+        for (int i = 0; i < 2_000; i++) {
+            LocalDate date = LocalDate.of(2015, 1, 1).plusDays(random.nextInt(365 * 6));
+            long days = random.nextInt(2_000) - 1_000;
+            assertThat(date + " + " + days, calendar.plusBusinessDays(date, days),
+                    equalTo(naive(calendar, date, days)));
+            assertThat(date + " + " + days, CALENDAR.plusBusinessDays(date, days),
+                    equalTo(naive(CALENDAR, date, days)));
+        }
+    }
+
+    @Test
+    public void testNoWeekend() {
+        BusinessCalendar calendar = new BusinessCalendar(
+                Collections.emptySet(), Collections.emptyList());
+        LocalDate date = LocalDate.of(2016, 1, 1);
+        assertThat(calendar.plusBusinessDays(date, 10_000), equalTo(date.plusDays(10_000)));
+        assertThat(calendar.plusBusinessDays(date, -366), equalTo(date.minusDays(366)));
+    }
+
+    @Test
+    public void testClocks() {
+        FixedClock clock = new FixedClock(LocalDateTime.of(2016, 12, 23, 17, 30), UTC);
+        assertThat(CALENDAR.advance(clock, 5), sameInstance(clock));
+        assertThat(clock.dateTime(), equalTo(LocalDateTime.of(2017, 1, 3, 17, 30)));
+        CALENDAR.nextBusinessDayAt(clock, LocalTime.of(9, 0));
+        assertThat(clock.dateTime(), equalTo(LocalDateTime.of(2017, 1, 4, 9, 0)));
+        CALENDAR.advance(clock, 250 * 3);
+        assertThat(clock.date(), equalTo(naive(CALENDAR, LocalDate.of(2017, 1, 4), 750)));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNoBusinessDays() {
+        new BusinessCalendar(EnumSet.allOf(DayOfWeek.class), Collections.emptyList());
+    }
+}
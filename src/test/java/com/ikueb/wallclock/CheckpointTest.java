@@ -0,0 +1,129 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import static java.time.ZoneOffset.UTC;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.testng.annotations.Test;
+
+public class CheckpointTest {
+
+    private static final LocalDateTime DATETIME = LocalDateTime.of(2016, 1, 1, 0, 0);
+
+    private static final class NamedListener implements AlarmClockListener {
+
+        private final String name;
+        private final List<String> triggered;
+
+        NamedListener(String name, List<String> triggered) {
+            this.name = name;
+            this.triggered = triggered;
+        }
+
+        @Override
+        public void alarmTriggered(ZonedDateTime zdt) {
+            triggered.add(name);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    @Test
+    public void testBranches() {
+        List<String> triggered = new ArrayList<>();
+        FixedAlarmClock clock = new FixedAlarmClock(DATETIME, UTC);
+        NamedListener a = new NamedListener("a", triggered);
+        NamedListener b = new NamedListener("b", triggered);
+        NamedListener c = new NamedListener("c", triggered);
+        clock.alarm(a, DATETIME.plusHours(1));
+        clock.alarm(b, LocalTime.of(1, 0));
+        clock.alarm(c);
+        Map<AlarmClockListener, Integer> registrations = clock.registrations();
+        FixedAlarmClock.Checkpoint checkpoint = clock.checkpoint();
+        assertThat(checkpoint.zonedDateTime(), equalTo(clock.zonedDateTime()));
+
+        clock.snooze(a);
+        clock.prioritize(c, 1);
+        clock.alarm(b, DATETIME.plusHours(1));
+        clock.setDateTime(DATETIME.plusHours(1));
+        assertThat(triggered, contains("c", "b", "b"));
+
+        triggered.clear();
+        long version = clock.version();
+        assertThat(clock.restore(checkpoint), sameInstance(clock));
+        assertThat(triggered, empty());
+        assertThat(clock.version(), equalTo(version + 1));
+        assertThat(clock.dateTime(), equalTo(DATETIME));
+        assertThat(clock.registrations(), equalTo(registrations));
+        assertThat(clock.schedule().next(), equalTo(Optional.of(DATETIME.plusHours(1))));
+        clock.setDateTime(DATETIME.plusHours(1));
+        assertThat(triggered, contains("a", "b", "c"));
+
+        triggered.clear();
+        clock.restore(checkpoint).restore(checkpoint);
+        clock.snooze(c);
+        clock.setDateTime(DATETIME.plusHours(1));
+        assertThat(triggered, contains("a", "b"));
+    }
+
+    @Test
+    public void testManyBranches() {
+        FixedAlarmClock clock = new FixedAlarmClock(DATETIME, UTC);
+        List<String> triggered = new ArrayList<>();
+        List<NamedListener> listeners = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            NamedListener listener = new NamedListener("listener-" + i, triggered);
+            listeners.add(listener);
+            for (int j = 0; j < 100; j++) {
+                clock.alarm(listener, DATETIME.plusMinutes(i * 100 + j + 1));
+            }
+        }
+        assertThat(clock.schedule().size(), equalTo(100_000));
+        FixedAlarmClock.Checkpoint checkpoint = clock.checkpoint();
+        for (int i = 0; i < 10_000; i++) {
+            NamedListener listener = listeners.get(i % listeners.size());
+            clock.snooze(listener);
+            clock.offset(Duration.ofMinutes(i % 100_000 + 1));
+            clock.restore(checkpoint);
+        }
+        assertThat(triggered.size(), equalTo(10_000 - 10));
+        assertThat(clock.schedule().size(), equalTo(100_000));
+        assertThat(clock.registrations().size(), equalTo(1_000));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testOtherClock() {
+        new FixedAlarmClock(DATETIME, UTC).restore(new FixedAlarmClock(DATETIME, UTC)
+                .checkpoint());
+    }
+}
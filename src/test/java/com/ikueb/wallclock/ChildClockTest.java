@@ -0,0 +1,97 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import static java.time.ZoneOffset.UTC;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.testng.annotations.Test;
+
+public class ChildClockTest {
+
+    private static final LocalDateTime DATETIME = LocalDateTime.of(2016, 1, 1, 0, 0);
+    private static final Duration ONE_HOUR = Duration.ofHours(1);
+
+    @Test
+    public void testFollowsParent() {
+        FixedClock parent = new FixedClock(DATETIME, UTC);
+        List<ChildClock> children = IntStream.range(0, 1_000)
+                .mapToObj(i -> new ChildClock(parent, Duration.ofSeconds(i)))
+                .collect(Collectors.toList());
+        parent.offset(ONE_HOUR);
+        for (int i = 0; i < children.size(); i++) {
+            assertThat(children.get(i).dateTime(),
+                    equalTo(DATETIME.plusHours(1).plusSeconds(i)));
+        }
+    }
+
+    @Test
+    public void testCachedUntilChanged() {
+        FixedAlarmClock parent = new FixedAlarmClock(DATETIME, UTC);
+        ChildClock child = new ChildClock(parent, ONE_HOUR);
+        ZonedDateTime zdt = child.zonedDateTime();
+        assertThat(child.zonedDateTime(), sameInstance(zdt));
+        parent.setDate(LocalDate.of(2016, 1, 1));
+        assertThat(child.zonedDateTime(), sameInstance(zdt));
+        parent.offset(ONE_HOUR);
+        assertThat(child.zonedDateTime(), not(sameInstance(zdt)));
+        assertThat(child.zonedDateTime(), equalTo(zdt.plus(ONE_HOUR)));
+        assertThat(child.instant(), equalTo(parent.instant().plus(ONE_HOUR)));
+    }
+
+    @Test
+    public void testModifyChild() {
+        FixedClock parent = new FixedClock(DATETIME, UTC);
+        ChildClock child = new ChildClock(parent);
+        ChildClock other = new ChildClock(parent);
+        assertThat(child.offset(ONE_HOUR), sameInstance(child));
+        assertThat(child.getOffset(), equalTo(ONE_HOUR));
+        child.setTime(LocalTime.NOON);
+        assertThat(child.getOffset(), equalTo(Duration.ofHours(12)));
+        child.setDate(LocalDate.of(2016, 1, 2));
+        assertThat(child.getOffset(), equalTo(Duration.ofHours(36)));
+        child.setDateTime(DATETIME.minusDays(1));
+        assertThat(child.getOffset(), equalTo(Duration.ofDays(-1)));
+        parent.offset(ONE_HOUR);
+        assertThat(child.dateTime(), equalTo(DATETIME.minusDays(1).plusHours(1)));
+        assertThat(other.dateTime(), equalTo(DATETIME.plusHours(1)));
+    }
+
+    @Test
+    public void testGrandchildren() {
+        FixedClock parent = new FixedClock(DATETIME, UTC);
+        ChildClock child = new ChildClock(parent, ONE_HOUR);
+        ChildClock grandchild = new ChildClock(child, ONE_HOUR);
+        assertThat(grandchild.dateTime(), equalTo(DATETIME.plusHours(2)));
+        parent.offset(ONE_HOUR);
+        assertThat(grandchild.dateTime(), equalTo(DATETIME.plusHours(3)));
+        child.offset(ONE_HOUR);
+        assertThat(grandchild.dateTime(), equalTo(DATETIME.plusHours(4)));
+        assertThat(grandchild.getZone(), equalTo(parent.getZone()));
+    }
+}
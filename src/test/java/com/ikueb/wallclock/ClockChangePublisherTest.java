@@ -0,0 +1,196 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import static java.time.ZoneOffset.UTC;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.testng.annotations.Test;
+
+public class ClockChangePublisherTest {
+
+    private static final LocalDateTime DATETIME = LocalDateTime.of(2016, 1, 1, 0, 0);
+    private static final Instant T0 = DATETIME.toInstant(UTC);
+
+    private static final class TestSubscriber implements ClockChangePublisher.Subscriber {
+
+        private final List<ClockChange> changes = new CopyOnWriteArrayList<>();
+        private final Consumer<ClockChange> onNext;
+        private volatile ClockChangePublisher.Subscription subscription;
+        private volatile Throwable error;
+        private volatile boolean completed;
+
+        TestSubscriber() {
+            this(change -> {});
+        }
+
+        TestSubscriber(Consumer<ClockChange> onNext) {
+            this.onNext = onNext;
+        }
+
+        @Override
+        public void onSubscribe(ClockChangePublisher.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(ClockChange change) {
+            changes.add(change);
+            onNext.accept(change);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+    private static Instant at(long seconds) {
+        return T0.plusSeconds(seconds);
+    }
+
+    private static ClockChange change(long from, long to) {
+        return new ClockChange(at(from), at(to));
+    }
+
+    @Test
+    public void testDemandAndCoalescing() {
+        ClockChangePublisher publisher = new ClockChangePublisher(Runnable::run);
+        TestSubscriber subscriber = new TestSubscriber();
+        publisher.subscribe(subscriber);
+        assertThat(subscriber.subscription, not(equalTo(null)));
+        for (int i = 0; i < 3; i++) {
+            publisher.publish(at(i), at(i + 1));
+        }
+        assertThat(subscriber.changes, empty());
+        subscriber.subscription.request(1);
+        assertThat(subscriber.changes, contains(change(0, 3)));
+        subscriber.subscription.request(2);
+        publisher.publish(at(3), at(4));
+        publisher.publish(at(4), at(5));
+        publisher.publish(at(5), at(6));
+        assertThat(subscriber.changes, contains(change(0, 3), change(3, 4), change(4, 5)));
+        subscriber.subscription.request(Long.MAX_VALUE);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        publisher.publish(at(6), at(7));
+        assertThat(subscriber.changes, contains(change(0, 3), change(3, 4), change(4, 5),
+                change(5, 6), change(6, 7)));
+    }
+
+    @Test
+    public void testCancel() {
+        ClockChangePublisher publisher = new ClockChangePublisher(Runnable::run);
+        TestSubscriber subscriber = new TestSubscriber();
+        publisher.subscribe(subscriber);
+        assertThat(publisher.subscribers(), equalTo(1));
+        subscriber.subscription.request(Long.MAX_VALUE);
+        subscriber.subscription.cancel();
+        publisher.publish(at(0), at(1));
+        assertThat(subscriber.changes, empty());
+        assertThat(publisher.subscribers(), equalTo(0));
+    }
+
+    @Test
+    public void testInvalidRequest() {
+        ClockChangePublisher publisher = new ClockChangePublisher(Runnable::run);
+        TestSubscriber subscriber = new TestSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(0);
+        assertThat(subscriber.error, instanceOf(IllegalArgumentException.class));
+        assertThat(publisher.subscribers(), equalTo(0));
+    }
+
+    @Test
+    public void testThrowingSubscriberIsCancelled() {
+        ClockChangePublisher publisher = new ClockChangePublisher(Runnable::run);
+        TestSubscriber subscriber = new TestSubscriber(change -> {
+            throw new IllegalStateException();
+        });
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        publisher.publish(at(0), at(1));
+        publisher.publish(at(1), at(2));
+        assertThat(subscriber.changes, contains(change(0, 1)));
+        assertThat(publisher.subscribers(), equalTo(0));
+    }
+
+    @Test
+    public void testClose() {
+        ClockChangePublisher publisher = new ClockChangePublisher(Runnable::run);
+        TestSubscriber subscriber = new TestSubscriber();
+        publisher.subscribe(subscriber);
+        publisher.publish(at(0), at(1));
+        publisher.close();
+        assertThat(subscriber.completed, is(false));
+        subscriber.subscription.request(1);
+        assertThat(subscriber.changes, contains(change(0, 1)));
+        assertThat(subscriber.completed, is(true));
+        TestSubscriber late = new TestSubscriber();
+        publisher.subscribe(late);
+        assertThat(late.completed, is(true));
+    }
+
+    @Test
+    public void testClockChanges() throws InterruptedException {
+        FixedAlarmClock clock = new FixedAlarmClock(DATETIME, UTC);
+        ClockChangePublisher publisher = clock.changes();
+        assertThat(clock.changes(), sameInstance(publisher));
+        CountDownLatch latest = new CountDownLatch(1);
+        Instant end = at(1_000);
+        TestSubscriber subscriber = new TestSubscriber(change -> {
+            if (change.getCurrent().equals(end)) {
+                latest.countDown();
+            }
+        });
+        publisher.subscribe(subscriber);
+        while (subscriber.subscription == null) {
+            Thread.yield();
+        }
+        subscriber.subscription.request(Long.MAX_VALUE);
+        for (int i = 0; i < 1_000; i++) {
+            clock.offset(Duration.ofSeconds(1));
+        }
+        assertThat(latest.await(10, TimeUnit.SECONDS), is(true));
+        Instant previous = T0;
+        for (ClockChange change : subscriber.changes) {
+            assertThat(change.getPrevious(), equalTo(previous));
+            previous = change.getCurrent();
+        }
+        publisher.close();
+        assertThat(clock.changes(), not(sameInstance(publisher)));
+    }
+}
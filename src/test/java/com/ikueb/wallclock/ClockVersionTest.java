@@ -0,0 +1,104 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import static java.time.ZoneOffset.UTC;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.testng.annotations.Test;
+
+public class ClockVersionTest {
+
+    private static final LocalDateTime DATETIME = LocalDateTime.of(2016, 1, 1, 0, 0);
+
+    @Test
+    public void testVersion() {
+        FixedClock clock = new FixedClock(DATETIME, UTC);
+        assertThat(clock.version(), equalTo(0L));
+        clock.offset(Duration.ofSeconds(1));
+        clock.setDateTime(clock.dateTime());
+        clock.offset(Duration.ZERO);
+        assertThat(clock.version(), equalTo(1L));
+        clock.setDateTime(DATETIME);
+        assertThat(clock.version(), equalTo(2L));
+    }
+
+    @Test
+    public void testAlreadyChanged() throws InterruptedException {
+        FixedAlarmClock clock = new FixedAlarmClock(DATETIME, UTC);
+        clock.offset(Duration.ofSeconds(1));
+        assertThat(clock.awaitChange(0), equalTo(1L));
+        assertThat(clock.awaitChange(0, Duration.ZERO), equalTo(1L));
+    }
+
+    @Test
+    public void testTimeout() throws InterruptedException {
+        FixedClock clock = new FixedClock(DATETIME, UTC);
+        assertThat(clock.awaitChange(0, Duration.ofMillis(50)), equalTo(0L));
+        assertThat(clock.awaitChange(0, Duration.ofSeconds(-1)), equalTo(0L));
+        clock.offset(Duration.ofSeconds(1));
+        assertThat(clock.awaitChange(0, Duration.ofMillis(50)), equalTo(1L));
+        assertThat(clock.awaitChange(1, Duration.ofMillis(50)), equalTo(1L));
+    }
+
+    @Test(timeOut = 10_000)
+    public void testWakeUp() throws Exception {
+        FixedClock clock = new FixedClock(DATETIME, UTC);
+        int pollers = 4;
+        int changes = 1_000;
+        ExecutorService executor = Executors.newFixedThreadPool(pollers);
+        try {
+            CountDownLatch ready = new CountDownLatch(pollers);
+            List<Future<Long>> results = new ArrayList<>();
+            for (int i = 0; i < pollers; i++) {
+                results.add(executor.submit(() -> {
+                    ready.countDown();
+                    long version = 0;
+                    while (version < changes) {
+                        version = clock.awaitChange(version);
+                    }
+                    return version;
+                }));
+            }
+            ready.await();
+            for (int i = 0; i < changes; i++) {
+                clock.offset(Duration.ofSeconds(1));
+            }
+            for (Future<Long> result : results) {
+                assertThat(result.get(), equalTo((long) changes));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(timeOut = 10_000, expectedExceptions = InterruptedException.class)
+    public void testInterrupted() throws InterruptedException {
+        FixedClock clock = new FixedClock(DATETIME, UTC);
+        Thread.currentThread().interrupt();
+        clock.awaitChange(0);
+    }
+}
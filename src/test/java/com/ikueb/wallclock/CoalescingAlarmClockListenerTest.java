@@ -0,0 +1,138 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import static java.time.ZoneOffset.UTC;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.testng.annotations.Test;
+
+public class CoalescingAlarmClockListenerTest {
+
+    private static final LocalDateTime DATETIME = LocalDateTime.of(2016, 1, 1, 0, 0);
+
+    @Test
+    public void testCoalescing() {
+        Queue<Runnable> tasks = new ArrayDeque<>();
+        List<ZonedDateTime> triggered = new CopyOnWriteArrayList<>();
+        List<Long> missed = new CopyOnWriteArrayList<>();
+        CoalescingAlarmClockListener listener = new CoalescingAlarmClockListener(
+                (zdt, n) -> { triggered.add(zdt); missed.add(n); }, tasks::add);
+        FixedAlarmClock clock = new FixedAlarmClock(DATETIME, UTC);
+        clock.alarm(listener);
+        for (int i = 0; i < 1_000; i++) {
+            clock.offset(Duration.ofSeconds(1));
+        }
+        assertThat(tasks.size(), equalTo(1));
+        assertThat(listener.isPending(), is(true));
+        assertThat(triggered, empty());
+        tasks.remove().run();
+        assertThat(triggered, contains(clock.zonedDateTime()));
+        assertThat(missed, contains(999L));
+        assertThat(listener.missed(), equalTo(999L));
+        assertThat(listener.isPending(), is(false));
+        clock.offset(Duration.ofSeconds(1));
+        tasks.remove().run();
+        assertThat(missed, contains(999L, 0L));
+        clock.snooze(listener);
+        clock.offset(Duration.ofSeconds(1));
+        assertThat(tasks, empty());
+    }
+
+    @Test
+    public void testRejectedExecution() throws InterruptedException {
+        FixedAlarmClock clock = new FixedAlarmClock(DATETIME, UTC);
+        Queue<Runnable> tasks = new ArrayDeque<>();
+        AtomicBoolean rejecting = new AtomicBoolean(true);
+        List<Long> missed = new CopyOnWriteArrayList<>();
+        CoalescingAlarmClockListener listener = new CoalescingAlarmClockListener(
+                (zdt, n) -> missed.add(n), task -> {
+                    if (rejecting.get()) {
+                        throw new RejectedExecutionException();
+                    }
+                    tasks.add(task);
+                });
+        AtomicLong triggered = new AtomicLong();
+        clock.alarm(listener);
+        clock.alarm(zdt -> triggered.incrementAndGet());
+        List<Throwable> reported = new CopyOnWriteArrayList<>();
+        Thread thread = new Thread(() -> clock.offset(Duration.ofSeconds(1)));
+        thread.setUncaughtExceptionHandler((t, e) -> reported.add(e));
+        thread.start();
+        thread.join();
+        assertThat(reported.size(), equalTo(1));
+        assertThat(reported.get(0) instanceof RejectedExecutionException, is(true));
+        assertThat(triggered.get(), equalTo(1L));
+        assertThat(listener.isPending(), is(true));
+        rejecting.set(false);
+        clock.offset(Duration.ofSeconds(1));
+        assertThat(tasks.size(), equalTo(1));
+        tasks.remove().run();
+        assertThat(missed, contains(1L));
+        clock.offset(Duration.ofSeconds(1));
+        tasks.remove().run();
+        assertThat(missed, contains(1L, 0L));
+        assertThat(triggered.get(), equalTo(3L));
+    }
+
+    @Test(timeOut = 10_000)
+    public void testSlowCallback() throws InterruptedException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        AtomicLong calls = new AtomicLong();
+        AtomicLong triggers = new AtomicLong();
+        List<ZonedDateTime> latest = new CopyOnWriteArrayList<>();
+        CoalescingAlarmClockListener listener = new CoalescingAlarmClockListener(
+                (zdt, n) -> {
+                    calls.incrementAndGet();
+                    triggers.addAndGet(n + 1);
+                    latest.add(zdt);
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }, executor);
+        FixedAlarmClock clock = new FixedAlarmClock(DATETIME, UTC);
+        clock.alarm(listener);
+        for (int i = 0; i < 10_000; i++) {
+            clock.offset(Duration.ofSeconds(1));
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(5, TimeUnit.SECONDS), is(true));
+        assertThat(triggers.get(), equalTo(10_000L));
+        assertThat(calls.get(), lessThan(10_000L));
+        assertThat(latest.get(latest.size() - 1), equalTo(clock.zonedDateTime()));
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import static java.time.ZoneOffset.UTC;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.testng.annotations.Test;
+
+public class DeadlineTrackerTest {
+
+    private static final LocalDateTime DATETIME = LocalDateTime.of(2016, 1, 1, 0, 0);
+
+    @Test
+    public void testExpire() {
+        FixedClock clock = new FixedClock(DATETIME, UTC);
+        List<List<String>> batches = new ArrayList<>();
+        DeadlineTracker<String> tracker = new DeadlineTracker<>(clock, batches::add);
+        tracker.register("a", Duration.ofSeconds(1));
+        tracker.register("b", Duration.ofSeconds(1));
+        DeadlineTracker.Deadline<String> c = tracker.register("c", Duration.ofSeconds(2));
+        DeadlineTracker.Deadline<String> d = tracker.register("d", Duration.ofDays(30));
+        assertThat(tracker.expire(), equalTo(0));
+        clock.offset(Duration.ofMillis(999));
+        assertThat(tracker.expire(), equalTo(0));
+        clock.offset(Duration.ofMillis(1));
+        assertThat(tracker.expire(), equalTo(2));
+        assertThat(batches, contains(containsInAnyOrder("a", "b")));
+        assertThat(c.cancel(), is(true));
+        assertThat(c.cancel(), is(false));
+        clock.offset(Duration.ofDays(29));
+        assertThat(tracker.expire(), equalTo(0));
+        assertThat(d.isPending(), is(true));
+        assertThat(d.expiresAt(), equalTo(clock.instant().plus(Duration.ofDays(1))
+                .minusSeconds(1)));
+        clock.offset(Duration.ofDays(1));
+        assertThat(tracker.expire(), equalTo(1));
+        assertThat(d.isPending(), is(false));
+        assertThat(tracker.size(), equalTo(0));
+    }
+
+    @Test
+    public void testOverdue() {
+        FixedClock clock = new FixedClock(DATETIME, UTC);
+        List<String> expired = new ArrayList<>();
+        DeadlineTracker<String> tracker = new DeadlineTracker<>(clock, expired::addAll);
+        tracker.register("overdue", clock.instant().minusSeconds(1));
+        tracker.register("now", Duration.ZERO);
+        assertThat(tracker.expire(), equalTo(2));
+        assertThat(expired, containsInAnyOrder("overdue", "now"));
+    }
+
+    @Test
+    public void testManyDeadlines() {
+        FixedClock clock = new FixedClock(DATETIME, UTC);
+        List<Integer> expired = new ArrayList<>();
+        DeadlineTracker<Integer> tracker = new DeadlineTracker<>(clock, expired::addAll);
+        List<DeadlineTracker.Deadline<Integer>> deadlines = IntStream.range(0, 200_000)
+                .mapToObj(i -> tracker.register(i, Duration.ofMillis(i)))
+                .collect(Collectors.toList());
+        deadlines.stream().filter(deadline -> deadline.getValue() % 2 == 1)
+                .forEach(DeadlineTracker.Deadline::cancel);
+        for (int i = 0; i < 100; i++) {
+            clock.offset(Duration.ofMillis(2_000));
+            tracker.expire();
+        }
+        expired.sort(null);
+        assertThat(expired, equalTo(IntStream.range(0, 100_000).map(i -> i * 2).boxed()
+                .collect(Collectors.toList())));
+        assertThat(tracker.size(), equalTo(0));
+    }
+
+    @Test
+    public void testDriverThread() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        try (DeadlineTracker<String> tracker = new DeadlineTracker<>(TickingClock.atUTC(),
+                batch -> latch.countDown())) {
+            tracker.start(Duration.ofMillis(1));
+            tracker.register("a", Duration.ofMillis(20));
+            assertThat(latch.await(10, TimeUnit.SECONDS), is(true));
+            assertThat(tracker.size(), equalTo(0));
+        }
+    }
+
+    @Test
+    public void testSubMillisecondDeadline() {
+        FixedClock clock = new FixedClock(DATETIME, UTC);
+        List<String> expired = new ArrayList<>();
+        DeadlineTracker<String> tracker = new DeadlineTracker<>(clock, expired::addAll);
+        DeadlineTracker.Deadline<String> deadline =
+                tracker.register("a", Duration.ofNanos(500_000));
+        assertThat(deadline.expiresAt(), equalTo(clock.instant().plusNanos(500_000)));
+        assertThat(tracker.expire(), equalTo(0));
+        clock.offset(Duration.ofNanos(400_000));
+        assertThat(tracker.expire(), equalTo(0));
+        clock.offset(Duration.ofNanos(600_000));
+        assertThat(tracker.expire(), equalTo(1));
+        assertThat(expired, contains("a"));
+    }
+
+    @Test
+    public void testDriverSurvivesCallbackFailure() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        BlockingQueue<Throwable> reported = new LinkedBlockingQueue<>();
+        Thread.UncaughtExceptionHandler handler = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler((thread, e) -> reported.add(e));
+        try (DeadlineTracker<String> tracker = new DeadlineTracker<>(TickingClock.atUTC(),
+                batch -> {
+                    if (batch.contains("fail")) {
+                        throw new IllegalStateException("fail");
+                    }
+                    latch.countDown();
+                })) {
+            tracker.start(Duration.ofMillis(1));
+            tracker.register("fail", Duration.ZERO);
+            Throwable thrown = reported.poll(10, TimeUnit.SECONDS);
+            assertThat(thrown instanceof IllegalStateException, is(true));
+            tracker.register("a", Duration.ofMillis(1));
+            assertThat(latch.await(10, TimeUnit.SECONDS), is(true));
+        } finally {
+            Thread.setDefaultUncaughtExceptionHandler(handler);
+        }
+    }
+
+    @Test
+    public void testNoCallbackWithoutExpiry() {
+        List<List<String>> batches = new ArrayList<>();
+        DeadlineTracker<String> tracker =
+                new DeadlineTracker<>(new FixedClock(DATETIME, UTC), batches::add);
+        tracker.register("a", Duration.ofSeconds(1));
+        tracker.expire();
+        assertThat(batches, empty());
+    }
+}
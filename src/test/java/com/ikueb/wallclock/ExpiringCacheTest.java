@@ -0,0 +1,148 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import static java.time.ZoneOffset.UTC;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class ExpiringCacheTest {
+
+    private static final LocalDateTime DATETIME = LocalDateTime.of(2016, 1, 1, 0, 0);
+    private static final Duration TTL = Duration.ofMinutes(5);
+
+    @Test
+    public void testExpireAfterWrite() {
+        FixedClock clock = new FixedClock(DATETIME, UTC);
+        ExpiringCache<String, Integer> cache = new ExpiringCache<>(clock, TTL, 10);
+        cache.put("a", 1);
+        clock.offset(Duration.ofMinutes(3));
+        assertThat(cache.put("b", 2), nullValue());
+        assertThat(cache.get("a"), equalTo(1));
+        clock.offset(Duration.ofMinutes(2).minusMillis(1));
+        assertThat(cache.get("a"), equalTo(1));
+        clock.offset(Duration.ofMillis(1));
+        assertThat(cache.get("a"), nullValue());
+        assertThat(cache.get("b"), equalTo(2));
+        assertThat(cache.put("b", 3), equalTo(2));
+        clock.offset(Duration.ofMinutes(4));
+        assertThat(cache.get("b"), equalTo(3));
+        assertThat(cache.remove("b"), equalTo(3));
+        assertThat(cache.size(), equalTo(0));
+        assertThat(cache.expirations(), equalTo(1L));
+    }
+
+    /**
+     * Entries expire at their exact deadline, even within a millisecond.
+     */
+    @Test
+    public void testSubMillisecondExpiry() {
+        FixedClock clock = new FixedClock(DATETIME.plusNanos(500_000), UTC);
+        Duration ttl = TTL.plusNanos(700_000);
+        ExpiringCache<String, Integer> cache = new ExpiringCache<>(clock, ttl, 10);
+        cache.put("a", 1);
+        clock.offset(ttl.minusNanos(1));
+        assertThat(cache.get("a"), equalTo(1));
+        clock.offset(Duration.ofNanos(1));
+        assertThat(cache.get("a"), nullValue());
+        assertThat(cache.put("a", 2), nullValue());
+        clock.offset(ttl.minusNanos(1));
+        assertThat(cache.remove("a"), equalTo(2));
+    }
+
+    @Test
+    public void testSizeBound() {
+        FixedClock clock = new FixedClock(DATETIME, UTC);
+        ExpiringCache<Integer, Integer> cache = new ExpiringCache<>(clock, TTL, 3);
+        for (int i = 0; i < 5; i++) {
+            cache.put(i, i);
+            clock.offset(Duration.ofSeconds(1));
+        }
+        assertThat(cache.size(), equalTo(3));
+        assertThat(cache.get(1), nullValue());
+        assertThat(cache.get(2), equalTo(2));
+        assertThat(cache.evictions(), equalTo(2L));
+    }
+
+    @Test
+    public void testExpireMillions() {
+        FixedClock clock = new FixedClock(DATETIME, UTC);
+        ExpiringCache<Integer, Integer> cache = new ExpiringCache<>(clock, TTL, 2_000_000);
+        for (int i = 0; i < 1_000_000; i++) {
+            cache.put(i, i);
+        }
+        clock.offset(Duration.ofMinutes(1));
+        cache.put(-1, -1);
+        assertThat(cache.size(), equalTo(1_000_001));
+        clock.offset(Duration.ofMinutes(4));
+        assertThat(cache.size(), equalTo(1));
+        assertThat(cache.expirations(), equalTo(1_000_000L));
+        clock.offset(Duration.ofDays(365));
+        assertThat(cache.size(), equalTo(0));
+    }
+
+    @DataProvider(name = "ttls")
+    public static Object[][] getTtls() {
+        return new Object[][] { { Duration.ofMillis(1) }, { Duration.ofMillis(100) },
+                { Duration.ofSeconds(10) }, { Duration.ofHours(6) }, { Duration.ofDays(30) } };
+    }
+
+    /**
+     * Entries expire exactly at their deadline, however the clock moves, including back.
+     * Expired entries stay expired even if the clock then moves back before the deadline.
+     */
+    @Test(dataProvider = "ttls")
+    public void testRandomSteps(Duration ttl) {
+        FixedClock clock = new FixedClock(DATETIME, UTC);
+        ExpiringCache<Integer, Long> cache = new ExpiringCache<>(clock, ttl, 1_000);
+        List<Long> deadlines = new ArrayList<>();
+        Random random = new Random(ttl.toMillis());
+        long range = ttl.toMillis() * 3;
+        for (int i = 0; i < 5_000; i++) {
+            if (deadlines.size() < 1_000) {
+                cache.put(deadlines.size(), clock.millis() + ttl.toMillis());
+                deadlines.add(clock.millis() + ttl.toMillis());
+            }
+            clock.offset(Duration.ofMillis((long) (random.nextDouble() * range / 50)
+                    - (i % 100 == 0 ? range / 10 : 0)));
+            long now = clock.millis();
+            int key = random.nextInt(deadlines.size());
+            Long value = cache.get(key);
+            for (int j = 0; j < deadlines.size(); j++) {
+                if (deadlines.get(j) <= now) {
+                    deadlines.set(j, Long.MIN_VALUE);
+                }
+            }
+            assertThat(value, deadlines.get(key) == Long.MIN_VALUE ? nullValue()
+                    : equalTo(deadlines.get(key)));
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidTtl() {
+        new ExpiringCache<>(new FixedClock(), Duration.ZERO, 1);
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import static java.time.ZoneOffset.UTC;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import jdk.jfr.EventSettings;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class FlightRecorderEventsTest {
+
+    private static final LocalDateTime DATETIME = LocalDateTime.of(2016, 1, 1, 0, 0);
+    private static final String MUTATION = "com.ikueb.wallclock.ClockMutation";
+    private static final String DISPATCH = "com.ikueb.wallclock.AlarmDispatch";
+
+    private static final class SleepingListener implements AlarmClockListener {
+
+        @Override
+        public void alarmTriggered(ZonedDateTime zdt) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Test
+    public void testMutationEvents() throws IOException {
+        FixedClock clock = new FixedClock(DATETIME, UTC);
+        clock.offset(Duration.ofDays(1));
+        List<RecordedEvent> events = record(MUTATION, r -> { }, () -> {
+            clock.offset(Duration.ofSeconds(1));
+            clock.offset(Duration.ZERO);
+            clock.setDateTime(DATETIME);
+        });
+        assertThat(events, hasSize(2));
+        RecordedEvent offset = events.get(0);
+        assertThat(offset.getInstant("oldInstant"),
+                equalTo(DATETIME.plusDays(1).toInstant(UTC)));
+        assertThat(offset.getInstant("newInstant"),
+                equalTo(DATETIME.plusDays(1).plusSeconds(1).toInstant(UTC)));
+        assertThat(offset.getDuration("jump"), equalTo(Duration.ofSeconds(1)));
+        assertThat(offset.getClass("clockClass").getName(),
+                equalTo(FixedClock.class.getName()));
+        assertThat(events.get(1).getDuration("jump"),
+                equalTo(Duration.ofDays(-1).minusSeconds(1)));
+    }
+
+    @Test
+    public void testExtremeInstants() throws IOException {
+        FixedClock clock = new FixedClock(DATETIME, UTC);
+        List<RecordedEvent> events = record(MUTATION, r -> { }, () -> {
+            clock.setDateTime(LocalDateTime.MAX);
+            clock.setDateTime(LocalDateTime.MIN);
+        });
+        assertThat(events, hasSize(2));
+        assertThat(events.get(0).getLong("newInstant"), equalTo(Long.MAX_VALUE));
+        assertThat(events.get(1).getLong("newInstant"), equalTo(Long.MIN_VALUE));
+        assertThat(events.get(1).getLong("jump"), equalTo(Long.MIN_VALUE));
+    }
+
+    @Test
+    public void testSaturation() {
+        assertThat(ClockEvents.saturatedMillis(Instant.MAX), equalTo(Long.MAX_VALUE));
+        assertThat(ClockEvents.saturatedMillis(Instant.MIN), equalTo(Long.MIN_VALUE));
+        assertThat(ClockEvents.saturatedMillis(Instant.ofEpochMilli(-1)), equalTo(-1L));
+        assertThat(ClockEvents.saturatedMillis(Instant.ofEpochMilli(Long.MAX_VALUE)),
+                equalTo(Long.MAX_VALUE));
+        assertThat(ClockEvents.saturatedMillis(Instant.ofEpochMilli(Long.MIN_VALUE)),
+                equalTo(Long.MIN_VALUE));
+        assertThat(ClockEvents.saturatedNanos(Instant.MIN, Instant.MAX),
+                equalTo(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testDispatchEvents() throws IOException {
+        FixedAlarmClock clock = new FixedAlarmClock(DATETIME, UTC);
+        AlarmClockListener fast = zdt -> { };
+        AlarmClockListener slow = new SleepingListener();
+        clock.alarm(fast);
+        clock.alarm(slow, DATETIME.plusHours(1));
+        clock.alarm(slow, DATETIME.toLocalDate().plusDays(1));
+        assertThat(record(DISPATCH, r -> r.withoutThreshold(),
+                () -> clock.setDateTime(DATETIME.minusHours(1))).stream()
+                .map(e -> e.getInstant("instant")).collect(Collectors.toList()),
+                contains(DATETIME.minusHours(1).toInstant(UTC),
+                        DATETIME.minusHours(1).toInstant(UTC)));
+        List<RecordedEvent> events = record(DISPATCH,
+                r -> r.withThreshold(Duration.ofMillis(10)),
+                () -> clock.setDateTime(DATETIME.plusHours(1)));
+        assertThat(events, hasSize(1));
+        RecordedEvent event = events.get(0);
+        assertThat(event.getClass("listenerClass").getName(),
+                equalTo(SleepingListener.class.getName()));
+        assertThat(event.getInt("evaluated"), equalTo(3));
+        assertThat(event.getInt("fired"), equalTo(1));
+        assertThat(event.getInstant("instant"),
+                equalTo(DATETIME.plusHours(1).toInstant(UTC)));
+    }
+
+    private static List<RecordedEvent> record(String name,
+            Consumer<EventSettings> settings, Runnable runnable) throws IOException {
+        if (!ClockEvents.isAvailable() || !FlightRecorder.isAvailable()) {
+            throw new SkipException("Flight Recorder is not available.");
+        }
+        Path file = Files.createTempFile("wallclock", ".jfr");
+        try (Recording recording = new Recording()) {
+            settings.accept(recording.enable(name));
+            recording.start();
+            runnable.run();
+            recording.stop();
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file).stream()
+                    .filter(e -> e.getEventType().getName().equals(name))
+                    .sorted((a, b) -> a.getStartTime().compareTo(b.getStartTime()))
+                    .collect(Collectors.toList());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import static java.time.ZoneOffset.UTC;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class Iso8601ParserTest {
+
+    private static final ZoneId NEW_YORK = ZoneId.of("America/New_York");
+    private static final LocalDate DATE = LocalDate.of(2000, 1, 1);
+
+    @DataProvider(name = "local")
+    public static Iterator<Object[]> getLocalData() {
+        return Stream.of("2016-01-01T00:00", "2016-02-29T23:59:59", "1970-01-01T00:00:00.1",
+                "2016-12-31T12:34:56.123456789", "0001-01-01T00:00:00.000001",
+                "9999-12-31T23:59:59.999999999", "2016-03-13T02:30:00",
+                "2016-11-06T01:30:00.5")
+                .map(text -> new Object[] { text, LocalDateTime.parse(text) })
+                .iterator();
+    }
+
+    @Test(dataProvider = "local")
+    public void testLocal(String text, LocalDateTime expected) {
+        Stream.of(UTC, NEW_YORK).forEach(zone -> {
+            ZonedDateTime expectedZdt = new FixedClock(DATE, zone).setDateTime(expected)
+                    .zonedDateTime();
+            assertThat(Iso8601Parser.setDateTime(new FixedClock(DATE, zone), text)
+                    .zonedDateTime(), equalTo(expectedZdt));
+            byte[] bytes = (" " + text + " ").getBytes(StandardCharsets.US_ASCII);
+            assertThat(Iso8601Parser.setDateTime(new FixedClock(DATE, zone), bytes, 1,
+                    bytes.length - 2).zonedDateTime(), equalTo(expectedZdt));
+        });
+    }
+
+    @DataProvider(name = "instant")
+    public static Iterator<Object[]> getInstantData() {
+        return Stream.of("2016-01-01T00:00Z", "2016-01-01T00:00:00z",
+                "2016-02-29T23:59:59.5+09:00", "2016-06-30T12:00:00-04:00",
+                "1969-12-31T23:59:59.999999999+00:00", "2016-01-01T00:00:00+0530",
+                "2016-01-01T00:00:00-18:00")
+                .map(text -> new Object[] { text, OffsetDateTime.parse(text.replace(
+                        "0530", "05:30")).toInstant() })
+                .iterator();
+    }
+
+    @Test(dataProvider = "instant")
+    public void testInstant(String text, Instant expected) {
+        Stream.of(UTC, NEW_YORK).forEach(zone -> {
+            FixedClock clock = Iso8601Parser.setDateTime(new FixedClock(DATE, zone), text);
+            assertThat(clock.instant(), equalTo(expected));
+            assertThat(clock.getZone(), equalTo(zone));
+        });
+    }
+
+    @DataProvider(name = "fallback")
+    public static Iterator<Object[]> getFallbackData() {
+        return Stream.of(
+                new Object[] { "2016-01-01T00:00:00+01:00[Europe/Paris]",
+                        ZonedDateTime.of(2015, 12, 31, 23, 0, 0, 0, UTC) },
+                new Object[] { "+12016-01-01T00:00:00",
+                        ZonedDateTime.of(12016, 1, 1, 0, 0, 0, 0, UTC) },
+                new Object[] { "2016-01-01T00:00:00+01:00:30",
+                        ZonedDateTime.of(2015, 12, 31, 22, 59, 30, 0, UTC) })
+                .iterator();
+    }
+
+    @Test(dataProvider = "fallback")
+    public void testFallback(String text, ZonedDateTime expected) {
+        assertThat(Iso8601Parser.setDateTime(new FixedClock(DATE, UTC), text)
+                .zonedDateTime(), equalTo(expected));
+    }
+
+    @DataProvider(name = "invalid")
+    public static Iterator<Object[]> getInvalidData() {
+        return Stream.of("2016-02-30T00:00", "2016-13-01T00:00", "2016-01-01T24:00",
+                "2016-01-01T00:60", "2016-01-01T00:00:6",
+                "2016-01-01T00:00:00.1234567891", "2016-01-01T00:00+19:00",
+                "2016-01-01T00:00:00+1", "2016-01-01", "not a date-time")
+                .map(text -> new Object[] { text })
+                .iterator();
+    }
+
+    @Test(dataProvider = "invalid", expectedExceptions = DateTimeParseException.class)
+    public void testInvalid(String text) {
+        Iso8601Parser.setDateTime(new FixedClock(DATE, UTC), text);
+    }
+
+    @Test
+    public void testSameDateTimeIsNoOp() {
+        FixedAlarmClock clock = new FixedAlarmClock(DATE.atStartOfDay(), UTC);
+        AtomicInteger counter = new AtomicInteger();
+        clock.alarm(zdt -> counter.incrementAndGet());
+        Iso8601Parser.setDateTime(clock, "2000-01-01T00:00");
+        Iso8601Parser.setDateTime(clock, "2000-01-01T00:00:00Z");
+        assertThat(counter.get(), equalTo(0));
+        Iso8601Parser.setDateTime(clock, "2000-01-01T00:00:01");
+        Iso8601Parser.setDateTime(clock, "2000-01-01T00:00:02Z");
+        assertThat(counter.get(), equalTo(2));
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void testBytesOutOfBounds() {
+        Iso8601Parser.setDateTime(new FixedClock(), new byte[16], 1, 16);
+    }
+}
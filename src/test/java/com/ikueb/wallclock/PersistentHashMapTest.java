@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class PersistentHashMapTest {
+
+    /**
+     * A key with a configurable number of distinct hashes, to force collisions.
+     */
+    private static final class TestKey {
+
+        private final int value;
+        private final int hash;
+
+        TestKey(int value, int hashes) {
+            this.value = value;
+            this.hash = (value % hashes) * 0x9E3779B9;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof TestKey && value == ((TestKey) o).value;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    @DataProvider(name = "hashes")
+    public static Object[][] getHashes() {
+        return new Object[][] { { Integer.MAX_VALUE }, { 64 }, { 1 } };
+    }
+
+    @Test(dataProvider = "hashes")
+    public void testAgainstHashMap(int hashes) {
+        Random random = new Random(hashes);
+        int keys = hashes == 1 ? 50 : 5_000;
+        Map<TestKey, Integer> expected = new HashMap<>();
+        PersistentHashMap<TestKey, Integer> map = PersistentHashMap.empty();
+        for (int i = 0; i < 50_000; i++) {
+            TestKey key = new TestKey(random.nextInt(keys), hashes);
+            if (random.nextInt(3) > 0) {
+                Integer value = random.nextInt(10);
+                expected.put(key, value);
+                map = map.plus(key, value);
+            } else {
+                expected.remove(key);
+                map = map.minus(key);
+            }
+            if (i % 1_000 == 0) {
+                verify(expected, map, keys, hashes);
+            }
+        }
+        verify(expected, map, keys, hashes);
+    }
+
+    @Test
+    public void testPersistence() {
+        PersistentHashMap<String, Integer> empty = PersistentHashMap.empty();
+        PersistentHashMap<String, Integer> one = empty.plus("a", 1);
+        PersistentHashMap<String, Integer> two = one.plus("b", 2);
+        assertThat(one.plus("a", 1), is(one));
+        assertThat(two.minus("c"), is(two));
+        assertThat(empty.get("a"), nullValue());
+        assertThat(one.get("b"), nullValue());
+        assertThat(two.get("b"), equalTo(2));
+        assertThat(two.plus("b", 3).get("b"), equalTo(3));
+        assertThat(two.get("b"), equalTo(2));
+        assertThat(two.minus("a").minus("b").isEmpty(), is(true));
+        assertThat(two.size(), equalTo(2));
+    }
+
+    private static void verify(Map<TestKey, Integer> expected,
+            PersistentHashMap<TestKey, Integer> map, int keys, int hashes) {
+        assertThat(map.size(), equalTo(expected.size()));
+        for (int i = 0; i < keys; i++) {
+            TestKey key = new TestKey(i, hashes);
+            assertThat(map.get(key), equalTo(expected.get(key)));
+        }
+        Map<TestKey, Integer> actual = new HashMap<>();
+        map.forEach(actual::put);
+        assertThat(actual, equalTo(expected));
+    }
+}
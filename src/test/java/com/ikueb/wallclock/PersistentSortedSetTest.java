@@ -0,0 +1,87 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.testng.annotations.Test;
+
+public class PersistentSortedSetTest {
+
+    @Test
+    public void testAgainstTreeSet() {
+        Random random = new Random(42);
+        TreeSet<Integer> expected = new TreeSet<>();
+        PersistentSortedSet<Integer> set = PersistentSortedSet.empty(Comparator.naturalOrder());
+        for (int i = 0; i < 20_000; i++) {
+            int value = random.nextInt(2_000);
+            if (random.nextBoolean()) {
+                expected.add(value);
+                set = set.plus(value);
+            } else {
+                expected.remove(value);
+                set = set.minus(value);
+            }
+            if (i % 500 == 0) {
+                verify(expected, set, random);
+            }
+        }
+        verify(expected, set, random);
+    }
+
+    @Test
+    public void testPersistence() {
+        PersistentSortedSet<Integer> empty = PersistentSortedSet.empty(Comparator.naturalOrder());
+        PersistentSortedSet<Integer> one = empty.plus(1);
+        PersistentSortedSet<Integer> two = one.plus(2);
+        assertThat(one.plus(1), is(one));
+        assertThat(two.minus(3), is(two));
+        assertThat(two.minus(1).minus(2).isEmpty(), is(true));
+        assertThat(empty.size(), equalTo(0));
+        assertThat(one.size(), equalTo(1));
+        assertThat(two.size(), equalTo(2));
+        assertThat(two.toString(), equalTo("[1, 2]"));
+        assertThat(empty.first(), nullValue());
+    }
+
+    private static void verify(TreeSet<Integer> expected, PersistentSortedSet<Integer> set,
+            Random random) {
+        assertThat(set.size(), equalTo(expected.size()));
+        List<Integer> actual = new ArrayList<>();
+        set.forEach(actual::add);
+        assertThat(actual, equalTo(new ArrayList<>(expected)));
+        assertThat(set.first(), equalTo(expected.isEmpty() ? null : expected.first()));
+        for (int i = 0; i < 100; i++) {
+            int value = random.nextInt(2_100) - 50;
+            assertThat(set.contains(value), equalTo(expected.contains(value)));
+            assertThat(set.rank(value), equalTo(expected.headSet(value).size()));
+            assertThat(set.higher(value), equalTo(expected.higher(value)));
+            int to = value + random.nextInt(100);
+            List<Integer> range = new ArrayList<>();
+            set.forEach(value, to, range::add);
+            assertThat(range, equalTo(new ArrayList<>(expected.subSet(value, to))));
+        }
+    }
+}
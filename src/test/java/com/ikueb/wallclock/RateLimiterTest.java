@@ -0,0 +1,123 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import static java.time.ZoneOffset.UTC;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class RateLimiterTest {
+
+    private static final LocalDateTime DATETIME = LocalDateTime.of(2016, 1, 1, 0, 0);
+
+    private static int acquireAll(RateLimiter limiter) {
+        int result = 0;
+        while (limiter.tryAcquire()) {
+            result++;
+        }
+        return result;
+    }
+
+    @Test
+    public void testRefill() {
+        FixedClock clock = new FixedClock(DATETIME, UTC);
+        RateLimiter limiter = new RateLimiter(clock, 10, 5);
+        assertThat(limiter.availablePermits(), equalTo(5L));
+        assertThat(acquireAll(limiter), equalTo(5));
+        clock.offset(Duration.ofMillis(99));
+        assertThat(limiter.tryAcquire(), is(false));
+        clock.offset(Duration.ofMillis(1));
+        assertThat(limiter.tryAcquire(), is(true));
+        assertThat(limiter.tryAcquire(), is(false));
+        clock.offset(Duration.ofMinutes(1));
+        assertThat(limiter.availablePermits(), equalTo(5L));
+        assertThat(limiter.tryAcquire(3), is(true));
+        assertThat(limiter.tryAcquire(3), is(false));
+        assertThat(limiter.tryAcquire(2), is(true));
+    }
+
+    @Test
+    public void testHighRate() {
+        FixedClock clock = new FixedClock(DATETIME, UTC);
+        RateLimiter limiter = new RateLimiter(clock, 1_000_000, 1);
+        assertThat(acquireAll(limiter), equalTo(1));
+        clock.offset(Duration.ofMillis(1));
+        assertThat(acquireAll(limiter), equalTo(1));
+        assertThat(limiter.availablePermits(), equalTo(0L));
+    }
+
+    @Test
+    public void testClockMovesBack() {
+        FixedClock clock = new FixedClock(DATETIME, UTC);
+        RateLimiter limiter = new RateLimiter(clock, 1, 1);
+        assertThat(limiter.tryAcquire(), is(true));
+        clock.offset(Duration.ofSeconds(-10));
+        assertThat(limiter.tryAcquire(), is(false));
+        clock.offset(Duration.ofSeconds(11));
+        assertThat(limiter.tryAcquire(), is(true));
+    }
+
+    @DataProvider(name = "stripes")
+    public static Object[][] getStripes() {
+        return new Object[][] { { 1 }, { 4 }, { 16 } };
+    }
+
+    @Test(dataProvider = "stripes")
+    public void testConcurrentAcquisition(int stripes) throws Exception {
+        FixedClock clock = new FixedClock(DATETIME, UTC);
+        RateLimiter limiter = new RateLimiter(clock, 100, 1_600, stripes);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<Integer>> tasks = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                tasks.add(() -> {
+                    int acquired = 0;
+                    for (int j = 0; j < 10_000; j++) {
+                        acquired += limiter.tryAcquire() ? 1 : 0;
+                    }
+                    return acquired;
+                });
+            }
+            int total = 0;
+            for (Future<Integer> future : executor.invokeAll(tasks)) {
+                total += future.get();
+            }
+            assertThat(total, equalTo(1_600));
+            clock.offset(Duration.ofSeconds(4));
+            assertThat(limiter.availablePermits(), equalTo(400L));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidRate() {
+        new RateLimiter(new FixedClock(), 0, 1);
+    }
+}
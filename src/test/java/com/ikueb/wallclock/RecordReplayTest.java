@@ -0,0 +1,213 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import static java.time.ZoneOffset.UTC;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.testng.Assert.fail;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class RecordReplayTest {
+
+    private static final LocalDateTime DATETIME = LocalDateTime.of(2016, 1, 1, 0, 0);
+    private static final Duration STEP = Duration.ofMillis(1500).plusNanos(7);
+
+    private Path path;
+
+    @BeforeMethod
+    public void createFile() throws IOException {
+        path = Files.createTempFile("wallclock", ".journal");
+    }
+
+    @AfterMethod
+    public void deleteFile() {
+        deleteIfExists(path);
+    }
+
+    private static void deleteIfExists(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private List<Instant> record(int capacity, int readings) {
+        FixedClock clock = new FixedClock(DATETIME, UTC);
+        List<Instant> result = new ArrayList<>();
+        try (RecordingClock recordingClock = new RecordingClock(clock, path, capacity)) {
+            for (int i = 0; i < readings; i++) {
+                result.add(recordingClock.instant());
+                clock.offset(STEP);
+            }
+            assertThat(recordingClock.recorded(), equalTo((long) readings));
+        }
+        return result;
+    }
+
+    @Test
+    public void testReplay() {
+        List<Instant> expected = record(10, 5);
+        try (ReplayingClock clock = new ReplayingClock(path)) {
+            assertThat(clock.remaining(), equalTo(5L));
+            assertThat(clock.nextThreadId(), equalTo(Thread.currentThread().getId()));
+            assertThat(clock.instant(), equalTo(expected.get(0)));
+            assertThat(clock.millis(), equalTo(expected.get(1).toEpochMilli()));
+            assertThat(clock.zonedDateTime(), equalTo(expected.get(2).atZone(UTC)));
+            assertThat(clock.offset(STEP).instant(), equalTo(expected.get(3)));
+            ZoneId zone = ZoneId.of("Asia/Tokyo");
+            assertThat(clock.withZone(zone).instant().atZone(zone).getZone(),
+                    equalTo(zone));
+            assertThat(clock.remaining(), equalTo(0L));
+        }
+    }
+
+    @Test
+    public void testReplayOffset() {
+        Path ticking = path.resolveSibling(path.getFileName() + ".ticking");
+        List<Instant> expected = new ArrayList<>();
+        try (RecordingClock recordingClock =
+                new RecordingClock(new FixedClock(DATETIME, UTC), path, 4)) {
+            expected.add(recordingClock.offset(STEP).instant());
+            expected.add(recordingClock.instant());
+        }
+        try (RecordingClock recordingClock =
+                new RecordingClock(TickingClock.atUTC(), ticking, 4)) {
+            expected.add(recordingClock.instant());
+            expected.add(recordingClock.offset(Duration.ofDays(1)).instant());
+        }
+        try (ReplayingClock clock = new ReplayingClock(path);
+                ReplayingClock tickingClock = new ReplayingClock(ticking)) {
+            assertThat(clock.offset(STEP).instant(), equalTo(expected.get(0)));
+            assertThat(clock.instant(), equalTo(expected.get(1)));
+            assertThat(expected.get(1), equalTo(DATETIME.toInstant(UTC).plus(STEP)));
+            assertThat(tickingClock.instant(), equalTo(expected.get(2)));
+            assertThat(tickingClock.offset(Duration.ofDays(1)).instant(),
+                    equalTo(expected.get(3)));
+        } finally {
+            deleteIfExists(ticking);
+        }
+    }
+
+    @Test
+    public void testConcurrentWrapping() throws InterruptedException {
+        int threads = 4;
+        int readings = 20_000;
+        Journal journal = Journal.create(path, 16);
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            long id = i;
+            workers.add(new Thread(() -> {
+                for (int j = 0; j < readings; j++) {
+                    journal.append(id << 32 | j, id);
+                    if (j % 1000 == 0) {
+                        journal.flush();
+                    }
+                }
+            }));
+        }
+        workers.forEach(Thread::start);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        journal.close();
+        try (Journal replay = Journal.open(path)) {
+            assertThat(replay.count(), equalTo((long) threads * readings));
+            for (long i = replay.first(); i < replay.count(); i++) {
+                assertThat(replay.epochNanosAt(i) >>> 32, equalTo(replay.threadIdAt(i)));
+            }
+        }
+    }
+
+    @Test
+    public void testReplayMillis() {
+        FixedClock clock = new FixedClock(DATETIME, UTC);
+        try (RecordingClock recordingClock = new RecordingClock(clock, path, 1)) {
+            assertThat(recordingClock.millis(), equalTo(clock.millis()));
+        }
+        try (ReplayingClock replayingClock = new ReplayingClock(path)) {
+            assertThat(replayingClock.instant(),
+                    equalTo(Instant.ofEpochMilli(clock.millis())));
+        }
+    }
+
+    @Test
+    public void testReplayAfterWrapping() {
+        List<Instant> expected = record(4, 6);
+        try (ReplayingClock clock = new ReplayingClock(path)) {
+            assertThat(clock.remaining(), equalTo(4L));
+            for (Instant instant : expected.subList(2, 6)) {
+                assertThat(clock.instant(), equalTo(instant));
+            }
+        }
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testReplayExhausted() {
+        record(2, 1);
+        try (ReplayingClock clock = new ReplayingClock(path)) {
+            clock.instant();
+            clock.instant();
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testReplayInvalidFile() throws IOException {
+        Files.write(path, new byte[64]);
+        new ReplayingClock(path).close();
+    }
+
+    @Test
+    public void testOutOfRange() {
+        FixedClock clock = new FixedClock(LocalDateTime.of(2262, 4, 11, 23, 47, 16), UTC);
+        try (RecordingClock recordingClock = new RecordingClock(clock, path, 4)) {
+            recordingClock.instant();
+            recordingClock.millis();
+            clock.offset(Duration.ofSeconds(1));
+            for (Runnable reading : Arrays.<Runnable>asList(recordingClock::instant,
+                    recordingClock::millis)) {
+                try {
+                    reading.run();
+                    fail("Expected an instant out of range.");
+                } catch (ArithmeticException e) {
+                    // expected
+                }
+            }
+            assertThat(recordingClock.recorded(), equalTo(2L));
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new RecordingClock(new FixedClock(), path, 0).close();
+    }
+}
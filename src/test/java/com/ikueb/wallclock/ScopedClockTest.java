@@ -0,0 +1,116 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import static java.time.ZoneOffset.UTC;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.testng.annotations.Test;
+
+public class ScopedClockTest {
+
+    private static final LocalDateTime DATETIME = LocalDateTime.of(2016, 1, 1, 0, 0);
+    private static final ScopedClock CLOCK = new ScopedClock(new FixedClock(DATETIME, UTC));
+
+    @Test
+    public void testFallback() {
+        assertThat(CLOCK.scoped(), equalTo(Optional.empty()));
+        assertThat(CLOCK.dateTime(), equalTo(DATETIME));
+        assertThat(new ScopedClock().resolve(), sameInstance(TickingClock.atUTC()));
+    }
+
+    @Test
+    @SuppressWarnings("try")
+    public void testNestedScopes() {
+        FixedClock outer = new FixedClock(DATETIME.plusDays(1), UTC);
+        FixedClock inner = new FixedClock(DATETIME.plusDays(2), UTC);
+        try (ScopedClock.Scope scope = CLOCK.open(outer)) {
+            assertThat(CLOCK.dateTime(), equalTo(outer.dateTime()));
+            try (ScopedClock.Scope nested = CLOCK.open(inner)) {
+                assertThat(CLOCK.offset(Duration.ofHours(1)), sameInstance(inner));
+                assertThat(CLOCK.millis(), equalTo(inner.millis()));
+            }
+            assertThat(CLOCK.resolve(), sameInstance(outer));
+        }
+        assertThat(CLOCK.scoped().isPresent(), is(false));
+    }
+
+    @Test
+    @SuppressWarnings("try")
+    public void testWithZone() {
+        ZoneId zone = ZoneId.of("Asia/Tokyo");
+        FixedClock clock = new FixedClock(DATETIME, UTC);
+        try (ScopedClock.Scope scope = CLOCK.open(clock)) {
+            assertThat(CLOCK.withZone(zone).getZone(), equalTo(zone));
+            assertThat(((WallClock) CLOCK.withZone(zone)).zonedDateTime(),
+                    equalTo(clock.zonedDateTime().withZoneSameInstant(zone)));
+        }
+    }
+
+    @Test
+    @SuppressWarnings("try")
+    public void testInheritedScope() throws InterruptedException {
+        FixedClock clock = new FixedClock(DATETIME.plusYears(1), UTC);
+        AtomicReference<WallClock> resolved = new AtomicReference<>();
+        try (ScopedClock.Scope scope = CLOCK.open(clock)) {
+            Thread thread = new Thread(() -> resolved.set(CLOCK.resolve()));
+            thread.start();
+            thread.join();
+        }
+        assertThat(resolved.get(), sameInstance(clock));
+    }
+
+    @Test(threadPoolSize = 8, invocationCount = 64)
+    @SuppressWarnings("try")
+    public void testParallelScopes() {
+        LocalDateTime dateTime = DATETIME.plusSeconds(Thread.currentThread().getId());
+        try (ScopedClock.Scope scope = CLOCK.open(new FixedClock(dateTime, UTC))) {
+            for (int i = 0; i < 1_000; i++) {
+                CLOCK.offset(Duration.ofSeconds(1));
+            }
+            assertThat(CLOCK.dateTime(), equalTo(dateTime.plusSeconds(1_000)));
+        }
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testCloseByOtherThread() throws Throwable {
+        ScopedClock.Scope scope = CLOCK.open(new FixedClock(DATETIME, UTC));
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        try {
+            Thread thread = new Thread(() -> {
+                try {
+                    scope.close();
+                } catch (Throwable e) {
+                    thrown.set(e);
+                }
+            });
+            thread.start();
+            thread.join();
+        } finally {
+            scope.close();
+        }
+        throw thrown.get();
+    }
+}
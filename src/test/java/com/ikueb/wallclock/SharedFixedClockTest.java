@@ -0,0 +1,181 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.testng.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class SharedFixedClockTest {
+
+    private static final ZoneId TOKYO = ZoneId.of("Asia/Tokyo");
+    private static final ZonedDateTime START =
+            ZonedDateTime.of(LocalDateTime.of(2016, 1, 1, 0, 0), TOKYO);
+
+    private Path path;
+    private SharedFixedClock controller;
+    private SharedFixedClock reader;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        path = Files.createTempFile("wallclock", ".clock");
+        controller = SharedFixedClock.create(path, START);
+        reader = SharedFixedClock.open(path);
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        controller.close();
+        reader.close();
+        Files.deleteIfExists(path);
+    }
+
+    @Test
+    public void testOpen() {
+        assertThat(reader.getZone(), equalTo(TOKYO));
+        assertThat(reader.zonedDateTime(), equalTo(START));
+        assertThat(reader.millis(), equalTo(START.toInstant().toEpochMilli()));
+    }
+
+    @Test
+    public void testSet() {
+        Duration duration = Duration.ofHours(1).plusNanos(1);
+        assertThat(controller.offset(duration), sameInstance(controller));
+        assertThat(reader.instant(), equalTo(START.toInstant().plus(duration)));
+        LocalDate date = LocalDate.of(2017, 2, 3);
+        controller.setDate(date);
+        assertThat(reader.date(), equalTo(date));
+        LocalTime time = LocalTime.of(4, 5, 6);
+        controller.setTime(time);
+        assertThat(reader.time(), equalTo(time));
+        LocalDateTime dateTime = LocalDateTime.of(2018, 7, 8, 9, 10);
+        reader.setDateTime(dateTime);
+        assertThat(controller.dateTime(), equalTo(dateTime));
+    }
+
+    @Test
+    public void testWithZone() {
+        SharedFixedClock utc = controller.withZone(ZoneOffset.UTC);
+        assertThat(controller.withZone(TOKYO), sameInstance(controller));
+        assertThat(utc.instant(), equalTo(controller.instant()));
+        utc.offset(Duration.ofDays(1));
+        assertThat(reader.instant(), equalTo(START.toInstant().plus(Duration.ofDays(1))));
+        assertThat(utc.zonedDateTime(),
+                equalTo(START.plusDays(1).withZoneSameInstant(ZoneOffset.UTC)));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testOpenInvalidFile() throws IOException {
+        Path other = Files.createTempFile("wallclock", ".clock");
+        try {
+            Files.write(other, new byte[128]);
+            SharedFixedClock.open(other);
+        } finally {
+            Files.deleteIfExists(other);
+        }
+    }
+
+    @Test
+    public void testConcurrentWriters() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> first = executor.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    controller.offset(Duration.ofSeconds(1));
+                }
+            });
+            Future<?> second = executor.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    reader.offset(Duration.ofSeconds(1));
+                }
+            });
+            first.get();
+            second.get();
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(reader.instant(), equalTo(START.toInstant().plusSeconds(20_000)));
+    }
+
+    @Test
+    public void testFailedUpdate() {
+        try {
+            controller.offset(Duration.ofSeconds(Long.MAX_VALUE));
+            fail("Expected an overflow.");
+        } catch (DateTimeException | ArithmeticException e) {
+            // expected
+        }
+        assertThat(reader.zonedDateTime(), equalTo(START));
+        reader.offset(Duration.ofDays(1));
+        assertThat(controller.zonedDateTime(), equalTo(START.plusDays(1)));
+    }
+
+    /**
+     * The writer keeps the nanoseconds equal to the epoch seconds, modulo 1000, so that
+     * readers can detect torn readings.
+     */
+    @Test
+    public void testConsistentReadings() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        AtomicBoolean running = new AtomicBoolean(true);
+        try {
+            Future<?> writer = executor.submit(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    controller.offset(Duration.ofSeconds(1).plusNanos(1));
+                }
+                running.set(false);
+            });
+            Runnable check = () -> {
+                while (running.get()) {
+                    Instant instant = reader.instant();
+                    long expected = Math.floorMod(instant.getEpochSecond()
+                            - START.toEpochSecond(), 1_000_000_000L);
+                    assertThat((long) instant.getNano(), equalTo(expected));
+                }
+            };
+            Future<?> first = executor.submit(check);
+            Future<?> second = executor.submit(check);
+            writer.get();
+            first.get();
+            second.get();
+        } finally {
+            running.set(false);
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Random;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class TimeBucketsTest {
+
+    private static final long FROM = ZonedDateTime.of(1950, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC)
+            .toInstant().toEpochMilli();
+    private static final long TO = ZonedDateTime.of(2100, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC)
+            .toInstant().toEpochMilli();
+
+    @DataProvider(name = "zones")
+    public static Object[][] getZones() {
+        return new Object[][] { { ZoneOffset.UTC }, { ZoneOffset.ofHoursMinutes(5, 45) },
+                { ZoneId.of("America/New_York") }, { ZoneId.of("Europe/London") },
+                { ZoneId.of("Asia/Kolkata") }, { ZoneId.of("America/Sao_Paulo") },
+                { ZoneId.of("Asia/Tokyo") }, { ZoneId.of("Australia/Sydney") } };
+    }
+
+    private static long startOfDay(long epochMillis, ZoneId zone) {
+        LocalDate date = Instant.ofEpochMilli(epochMillis).atZone(zone).toLocalDate();
+        return date.atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    private static long truncate(long epochMillis, ZoneId zone, ChronoUnit unit) {
+        return Instant.ofEpochMilli(epochMillis).atZone(zone).truncatedTo(unit).toInstant()
+                .toEpochMilli();
+    }
+
+    @Test(dataProvider = "zones")
+    public void testRandomInstants(ZoneId zone) {
+        TimeBuckets buckets = new TimeBuckets(zone);
+        Random random = new Random(zone.hashCode());
+        for (int i = 0; i < 100_000; i++) {
+            long epochMillis = FROM + (long) (random.nextDouble() * (TO - FROM));
+            assertThat(buckets.floorDay(epochMillis), equalTo(startOfDay(epochMillis, zone)));
+            assertThat(buckets.floorHour(epochMillis),
+                    equalTo(truncate(epochMillis, zone, ChronoUnit.HOURS)));
+            assertThat(buckets.floorMinute(epochMillis),
+                    equalTo(truncate(epochMillis, zone, ChronoUnit.MINUTES)));
+        }
+    }
+
+    @Test(dataProvider = "zones")
+    public void testTransitions(ZoneId zone) {
+        TimeBuckets buckets = new TimeBuckets(zone);
+        ZonedDateTime zdt = ZonedDateTime.of(2016, 1, 1, 0, 0, 0, 0, zone);
+        for (int i = 0; i < 366 * 24 * 4; i++, zdt = zdt.plusMinutes(15)) {
+            long epochMillis = zdt.toInstant().toEpochMilli();
+            assertThat(zdt.toString(), buckets.floorDay(epochMillis),
+                    equalTo(startOfDay(epochMillis, zone)));
+            assertThat(buckets.offsetMillis(epochMillis),
+                    equalTo(zdt.getOffset().getTotalSeconds() * 1000L));
+        }
+    }
+
+    @Test
+    public void testMidnightGap() {
+        ZoneId zone = ZoneId.of("America/Sao_Paulo");
+        TimeBuckets buckets = new TimeBuckets(zone);
+        long epochMillis = ZonedDateTime.of(2016, 10, 16, 12, 0, 0, 0, zone).toInstant()
+                .toEpochMilli();
+        ZonedDateTime expected = ZonedDateTime.of(2016, 10, 16, 1, 0, 0, 0, zone);
+        assertThat(buckets.floorDay(epochMillis),
+                equalTo(expected.toInstant().toEpochMilli()));
+    }
+
+    @Test
+    public void testOutsideTable() {
+        ZoneId zone = ZoneId.of("Europe/London");
+        TimeBuckets buckets = new TimeBuckets(zone);
+        long epochMillis = ZonedDateTime.of(2300, 7, 1, 12, 34, 0, 0, zone).toInstant()
+                .toEpochMilli();
+        assertThat(buckets.floorDay(epochMillis), equalTo(startOfDay(epochMillis, zone)));
+        assertThat(buckets.floor(epochMillis, 15 * TimeBuckets.MINUTE),
+                equalTo(epochMillis - 4 * TimeBuckets.MINUTE));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidWidth() {
+        new TimeBuckets(ZoneOffset.UTC).floor(0, 7 * TimeBuckets.MINUTE);
+    }
+}
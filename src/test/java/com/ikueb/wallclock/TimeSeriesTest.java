@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import static java.time.ZoneOffset.UTC;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class TimeSeriesTest {
+
+    private static final LocalDateTime DATETIME = LocalDateTime.of(2016, 1, 1, 0, 0);
+    private static final FixedClock CLOCK = new FixedClock(DATETIME, UTC);
+    private static final Instant START = CLOCK.instant();
+
+    @DataProvider(name = "steps")
+    public static Object[][] getSteps() {
+        return new Object[][] {
+                { Duration.ofDays(30), Duration.ofHours(1) },
+                { Duration.ofSeconds(10), Duration.ofMillis(333).plusNanos(333_333) },
+                { Duration.ofSeconds(10), Duration.ofSeconds(3) },
+                { Duration.ofMinutes(1), Duration.ofMinutes(1) },
+                { Duration.ZERO, Duration.ofSeconds(1) } };
+    }
+
+    @Test(dataProvider = "steps")
+    public void testInstants(Duration range, Duration step) {
+        List<Instant> expected = Stream.iterate(START, instant -> instant.plus(step))
+                .limit(range.toNanos() / step.toNanos()
+                        + (range.toNanos() % step.toNanos() == 0 ? 0 : 1))
+                .collect(Collectors.toList());
+        assertThat(CLOCK.instants(range, step).collect(Collectors.toList()),
+                equalTo(expected));
+        assertThat(CLOCK.instants(range, step).parallel().collect(Collectors.toList()),
+                equalTo(expected));
+        assertThat(CLOCK.epochMillis(range, step).parallel().boxed()
+                .collect(Collectors.toList()), equalTo(expected.stream()
+                        .map(Instant::toEpochMilli).collect(Collectors.toList())));
+    }
+
+    @Test
+    public void testZonedDateTimes() {
+        ZoneId zone = ZoneId.of("Asia/Tokyo");
+        assertThat(new FixedClock(DATETIME, zone)
+                .zonedDateTimes(Duration.ofDays(2), Duration.ofDays(1))
+                .collect(Collectors.toList()),
+                contains(ZonedDateTime.of(DATETIME, zone),
+                        ZonedDateTime.of(DATETIME.plusDays(1), zone)));
+    }
+
+    @Test
+    public void testSplitEvenly() {
+        Spliterator<Instant> suffix = TimeSeries
+                .of(START, Duration.ofSeconds(100), Duration.ofSeconds(1)).spliterator();
+        Spliterator<Instant> prefix = suffix.trySplit();
+        assertThat(prefix.estimateSize(), equalTo(50L));
+        assertThat(suffix.estimateSize(), equalTo(50L));
+        assertThat(suffix.hasCharacteristics(Spliterator.SUBSIZED), is(true));
+        suffix.tryAdvance(instant -> assertThat(instant, equalTo(START.plusSeconds(50))));
+        Spliterator<Instant> single = TimeSeries
+                .of(START, Duration.ofSeconds(1), Duration.ofSeconds(1)).spliterator();
+        assertThat(single.trySplit(), nullValue());
+    }
+
+    @Test
+    public void testGet() {
+        TimeSeries series = TimeSeries.of(START, Duration.ofDays(365), Duration.ofDays(1));
+        assertThat(series.size(), equalTo(365L));
+        assertThat(series.get(364), equalTo(START.plus(Duration.ofDays(364))));
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void testGetOutOfRange() {
+        TimeSeries.of(START, Duration.ofDays(1), Duration.ofDays(1)).get(1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidStep() {
+        CLOCK.instants(Duration.ofDays(1), Duration.ZERO);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testTooManyInstants() {
+        CLOCK.epochMillis(Duration.ofDays(365_000), Duration.ofNanos(1));
+    }
+}
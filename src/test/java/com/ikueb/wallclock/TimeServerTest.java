@@ -0,0 +1,200 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import static java.time.ZoneOffset.UTC;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TimeServerTest {
+
+    private static final LocalDateTime DATETIME = LocalDateTime.of(2016, 1, 1, 0, 0);
+    private static final long TIMEOUT = TimeUnit.SECONDS.toNanos(10);
+
+    /**
+     * The server registers a listener for all updates, in addition to the remote alarms.
+     */
+    private FixedAlarmClock clock;
+    private TimeServer server;
+
+    @BeforeMethod
+    public void setUp() {
+        clock = new FixedAlarmClock(DATETIME, UTC);
+        server = new TimeServer(clock);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        server.close();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long start = System.nanoTime();
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() - start > TIMEOUT) {
+                throw new AssertionError("Timed out.");
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void testPushedUpdates() throws InterruptedException {
+        try (RemoteClock remoteClock = new RemoteClock(server.getPort())) {
+            assertThat(remoteClock.zonedDateTime(), equalTo(clock.zonedDateTime()));
+            clock.offset(Duration.ofMinutes(1));
+            await(() -> remoteClock.dateTime().equals(DATETIME.plusMinutes(1)));
+            ZoneId zone = ZoneId.of("Asia/Tokyo");
+            assertThat(remoteClock.withZone(zone).getZone(), equalTo(zone));
+            assertThat(remoteClock.offset(Duration.ofHours(1)).dateTime(),
+                    equalTo(DATETIME.plusMinutes(1).plusHours(1)));
+        }
+    }
+
+    @Test
+    public void testRemoteAlarm() throws InterruptedException {
+        BlockingQueue<ZonedDateTime> triggered = new LinkedBlockingQueue<>();
+        AlarmClockListener listener = triggered::add;
+        LocalDateTime alarm = DATETIME.plusHours(1);
+        try (RemoteClock remoteClock = new RemoteClock(server.getPort())) {
+            remoteClock.alarm(listener, alarm);
+            await(() -> clock.registrations().size() == 2);
+            clock.setDateTime(alarm);
+            assertThat(triggered.poll(10, TimeUnit.SECONDS),
+                    equalTo(ZonedDateTime.of(alarm, UTC)));
+            assertThat(remoteClock.dateTime(), equalTo(alarm));
+            remoteClock.snooze(listener, alarm);
+            await(() -> clock.registrations().size() == 1);
+        }
+    }
+
+    @Test
+    public void testDisconnectRemovesAlarms() throws InterruptedException {
+        RemoteClock remoteClock = new RemoteClock(server.getPort());
+        remoteClock.alarm(zdt -> {});
+        await(() -> clock.registrations().size() == 2 && server.clients() == 1);
+        remoteClock.close();
+        await(() -> clock.registrations().size() == 1 && server.clients() == 0);
+        assertThat(remoteClock.isConnected(), is(false));
+    }
+
+    @Test
+    public void testFailingListener() throws InterruptedException {
+        BlockingQueue<ZonedDateTime> triggered = new LinkedBlockingQueue<>();
+        try (RemoteClock remoteClock = new RemoteClock(server.getPort())) {
+            remoteClock.alarm(zdt -> {
+                throw new IllegalStateException("Expected.");
+            });
+            remoteClock.alarm(triggered::add);
+            await(() -> clock.registrations().size() == 3);
+            clock.offset(Duration.ofSeconds(1));
+            assertThat(triggered.poll(10, TimeUnit.SECONDS),
+                    equalTo(clock.zonedDateTime()));
+            clock.offset(Duration.ofSeconds(1));
+            await(() -> remoteClock.dateTime().equals(clock.dateTime()));
+            assertThat(remoteClock.isConnected(), is(true));
+        }
+    }
+
+    @Test
+    public void testInvalidRequest() throws IOException, InterruptedException {
+        try (Socket client = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            client.setSoTimeout((int) TimeUnit.NANOSECONDS.toMillis(TIMEOUT));
+            DataOutputStream out = new DataOutputStream(client.getOutputStream());
+            out.writeByte(TimeProtocol.ALARM);
+            out.writeInt(1);
+            out.writeByte(1); // a date, with an epoch day that is out of range
+            out.writeLong(Long.MAX_VALUE);
+            out.flush();
+            InputStream in = client.getInputStream();
+            while (in.read() >= 0) {
+                // skip the updates sent before the request is read
+            }
+            await(() -> server.clients() == 0);
+            assertThat(clock.registrations().size(), equalTo(1));
+        }
+    }
+
+    /**
+     * A client that registers an alarm for all updates, but never reads, is dropped once
+     * too many alarms are pending, and does not hold up the other clients meanwhile.
+     */
+    @Test
+    public void testStalledClient() throws IOException, InterruptedException {
+        try (Socket stalled = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+                RemoteClock remoteClock = new RemoteClock(server.getPort())) {
+            DataOutputStream out = new DataOutputStream(stalled.getOutputStream());
+            out.writeByte(TimeProtocol.ALARM);
+            out.writeInt(1);
+            TimeProtocol.writeTemporal(out, null);
+            out.flush();
+            await(() -> clock.registrations().size() == 2 && server.clients() == 2);
+            long start = System.nanoTime();
+            while (server.clients() == 2) {
+                if (System.nanoTime() - start > TIMEOUT) {
+                    throw new AssertionError("Timed out.");
+                }
+                for (int i = 0; i < 1_000; i++) {
+                    clock.offset(Duration.ofSeconds(1));
+                }
+                LocalDateTime expected = clock.dateTime();
+                await(() -> remoteClock.dateTime().equals(expected));
+            }
+            assertThat(clock.registrations().size(), equalTo(1));
+            clock.offset(Duration.ofSeconds(1));
+            await(() -> remoteClock.dateTime().equals(clock.dateTime()));
+        }
+    }
+
+    @Test
+    public void testManyClients() throws InterruptedException {
+        List<RemoteClock> remoteClocks = new ArrayList<>();
+        try {
+            for (int i = 0; i < 200; i++) {
+                remoteClocks.add(new RemoteClock(server.getPort()));
+            }
+            for (int i = 0; i < 1_000; i++) {
+                clock.offset(Duration.ofSeconds(1));
+            }
+            LocalDateTime expected = DATETIME.plusSeconds(1_000);
+            await(() -> remoteClocks.stream()
+                    .allMatch(remoteClock -> remoteClock.dateTime().equals(expected)));
+        } finally {
+            remoteClocks.forEach(RemoteClock::close);
+        }
+    }
+}
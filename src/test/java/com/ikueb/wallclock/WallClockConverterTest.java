@@ -0,0 +1,155 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import static java.time.ZoneOffset.UTC;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.PatternLayout;
+import ch.qos.logback.classic.spi.LoggingEvent;
+
+public class WallClockConverterTest {
+
+    private static final LocalDateTime DATETIME = LocalDateTime.of(2016, 1, 1, 12, 34, 56);
+    private static final ZoneId TOKYO = ZoneId.of("Asia/Tokyo");
+
+    @AfterMethod
+    public void reset() {
+        WallClockConverter.setClock(TickingClock.atUTC());
+    }
+
+    @DataProvider(name = "patterns")
+    public static Iterator<Object[]> getPatterns() {
+        return Stream.of(
+                new Object[] { "%wallclock", UTC, "2016-01-01 12:34:56,007" },
+                new Object[] { "%wallclock{HH:mm:ss.SSS}", UTC, "12:34:56.007" },
+                new Object[] { "%wallclock{yyyyMMddHHmmssSSS}", UTC, "20160101123456007" },
+                new Object[] { "%wallclock{yyyy-MM-dd HH:mm:ss}", UTC, "2016-01-01 12:34:56" },
+                new Object[] { "%wallclock{HH:mm:ss.SSS}", TOKYO, "12:34:56.007" },
+                new Object[] { "%wallclock{HH:mm:ss.SSSS}", UTC, "12:34:56.0070" },
+                new Object[] { "%wallclock{HH:mm:ss'T'SSS}", UTC, "12:34:56T007" },
+                new Object[] { "%wallclock{HH:mm:ss 'SnNA'}", UTC, "12:34:56 SnNA" })
+                .iterator();
+    }
+
+    @DataProvider(name = "sub-second-patterns")
+    public static Iterator<Object[]> getSubSecondPatterns() {
+        return Stream.of(
+                new Object[] { "%wallclock{HH:mm:ss.SS}", "12:34:56.45" },
+                new Object[] { "%wallclock{HH:mm:ss.S}", "12:34:56.4" },
+                new Object[] { "%wallclock{A}", "45296456" },
+                new Object[] { "%wallclock{SSS HH:mm:ss}", "456 12:34:56" },
+                new Object[] { "%wallclock{HH:mm:ss.n}", "12:34:56.456000000" },
+                new Object[] { "%wallclock{N}", "45296456000000" })
+                .iterator();
+    }
+
+    @Test(dataProvider = "patterns")
+    public void testPattern(String pattern, ZoneId zoneId, String expected) {
+        WallClockConverter.setClock(
+                new FixedClock(DATETIME.plus(Duration.ofMillis(7)), zoneId));
+        assertThat(layout(pattern).doLayout(event()), equalTo(expected));
+    }
+
+    @Test(dataProvider = "sub-second-patterns")
+    public void testSubSecondPattern(String pattern, String expected) {
+        FixedClock clock = new FixedClock(DATETIME.plus(Duration.ofMillis(456)), UTC);
+        WallClockConverter.setClock(clock);
+        PatternLayout layout = layout(pattern);
+        assertThat(layout.doLayout(event()), equalTo(expected));
+        clock.offset(Duration.ofMillis(-456));
+        assertThat(layout.doLayout(event()), not(equalTo(expected)));
+    }
+
+    @Test
+    public void testClockUpdates() {
+        FixedClock clock = new FixedClock(DATETIME, UTC);
+        WallClockConverter.setClock(clock);
+        PatternLayout layout = layout("%wallclock{HH:mm:ss.SSS}");
+        assertThat(layout.doLayout(event()), equalTo("12:34:56.000"));
+        clock.offset(Duration.ofMillis(999));
+        assertThat(layout.doLayout(event()), equalTo("12:34:56.999"));
+        clock.offset(Duration.ofMillis(1));
+        assertThat(layout.doLayout(event()), equalTo("12:34:57.000"));
+        WallClockConverter.setClock(new FixedClock(DATETIME, UTC));
+        assertThat(layout.doLayout(event()), equalTo("12:34:56.000"));
+    }
+
+    @Test
+    public void testZoneUpdates() {
+        FixedClock clock = new FixedClock(DATETIME, UTC);
+        ZoneView[] view = { new ZoneView(clock, UTC) };
+        WallClockConverter.setClock(new WallClock() {
+            @Override
+            public ZonedDateTime zonedDateTime() {
+                return view[0].zonedDateTime();
+            }
+
+            @Override
+            public Instant instant() {
+                return view[0].instant();
+            }
+
+            @Override
+            public ZoneId getZone() {
+                return view[0].getZone();
+            }
+
+            @Override
+            public WallClock offset(Duration duration) {
+                view[0].offset(duration);
+                return this;
+            }
+        });
+        PatternLayout layout = layout("%wallclock{HH:mm:ss.SSS}");
+        assertThat(layout.doLayout(event()), equalTo("12:34:56.000"));
+        view[0] = view[0].withZone(TOKYO);
+        assertThat(layout.doLayout(event()), equalTo("21:34:56.000"));
+    }
+
+    private static PatternLayout layout(String pattern) {
+        PatternLayout layout = new PatternLayout();
+        layout.setContext(new LoggerContext());
+        layout.getInstanceConverterMap().put("wallclock",
+                WallClockConverter.class.getName());
+        layout.setPattern(pattern);
+        layout.start();
+        return layout;
+    }
+
+    private static LoggingEvent event() {
+        LoggingEvent event = new LoggingEvent();
+        event.setLevel(Level.INFO);
+        event.setMessage("message");
+        return event;
+    }
+}
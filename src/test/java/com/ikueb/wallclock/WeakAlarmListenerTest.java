@@ -0,0 +1,131 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import static java.time.ZoneOffset.UTC;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+public class WeakAlarmListenerTest {
+
+    private static final LocalDateTime DATETIME = LocalDateTime.of(2016, 1, 1, 0, 0);
+
+    private static final class CountingListener implements AlarmClockListener {
+
+        private final AtomicInteger counter;
+
+        CountingListener(AtomicInteger counter) {
+            this.counter = counter;
+        }
+
+        @Override
+        public void alarmTriggered(ZonedDateTime zdt) {
+            counter.incrementAndGet();
+        }
+    }
+
+    private static final class NamedListener implements AlarmClockListener {
+
+        private final String name;
+
+        NamedListener(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void alarmTriggered(ZonedDateTime zdt) {
+            // no-op
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof NamedListener && name.equals(((NamedListener) o).name);
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode();
+        }
+    }
+
+    @Test
+    public void testPurge() {
+        FixedAlarmClock clock = new FixedAlarmClock(DATETIME, UTC);
+        AtomicInteger counter = new AtomicInteger();
+        List<AlarmClockListener> retained = new ArrayList<>();
+        List<AlarmClockListener> collected = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            AlarmClockListener listener = new CountingListener(counter);
+            clock.alarm(listener);
+            if (i % 4 != 0) {
+                assertThat(clock.weaken(listener), is(true));
+            }
+            if (i % 2 == 0) {
+                retained.add(listener);
+            } else {
+                collected.add(listener);
+            }
+        }
+        collected.forEach(listener -> assertThat(clock.collect(listener), is(true)));
+        clock.offset(Duration.ofSeconds(1));
+        assertThat(clock.purged(), equalTo(500L));
+        assertThat(clock.registrations().size(), equalTo(500));
+        assertThat(clock.registrations().keySet().containsAll(retained), is(true));
+        counter.set(0);
+        clock.offset(Duration.ofSeconds(1));
+        assertThat(counter.get(), equalTo(500));
+        assertThat(clock.instrument().listenersPurged(), equalTo(500L));
+    }
+
+    @Test
+    public void testStrongAfterSnooze() {
+        FixedAlarmClock clock = new FixedAlarmClock(DATETIME, UTC);
+        AtomicInteger counter = new AtomicInteger();
+        AlarmClockListener listener = new CountingListener(counter);
+        assertThat(clock.weaken(listener), is(false));
+        clock.alarm(listener, DATETIME.toLocalDate());
+        clock.weaken(listener);
+        clock.snooze(listener, DATETIME.toLocalDate());
+        assertThat(clock.collect(listener), is(false));
+        clock.alarm(listener);
+        assertThat(clock.collect(listener), is(false));
+        clock.offset(Duration.ofSeconds(1));
+        assertThat(clock.purged(), equalTo(0L));
+        assertThat(clock.registrations().size(), equalTo(1));
+        assertThat(counter.get(), equalTo(1));
+    }
+
+    @Test
+    public void testEqualListeners() {
+        FixedAlarmClock clock = new FixedAlarmClock(DATETIME, UTC);
+        clock.alarm(new NamedListener("a"));
+        clock.alarm(new NamedListener("a"), DATETIME);
+        assertThat(clock.registrations().size(), equalTo(1));
+        assertThat(clock.weaken(new NamedListener("a")), is(true));
+        clock.snooze(new NamedListener("a"));
+        assertThat(clock.registrations().size(), equalTo(0));
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2016 h-j-k. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ikueb.wallclock;
+
+import static java.time.ZoneOffset.UTC;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import org.testng.annotations.Test;
+
+public class ZoneViewTest {
+
+    private static final LocalDateTime DATETIME = LocalDateTime.of(2016, 1, 1, 0, 0);
+    private static final ZoneId TOKYO = ZoneId.of("Asia/Tokyo");
+    private static final List<ZoneId> ZONES = Arrays.asList(TOKYO,
+            ZoneId.of("Europe/London"), ZoneId.of("America/New_York"),
+            ZoneId.of("Australia/Sydney"), ZoneId.of("Asia/Kolkata"), UTC);
+
+    @Test
+    public void testLiveViews() {
+        FixedClock clock = new FixedClock(DATETIME, UTC);
+        List<ZoneView> views = ZONES.stream().map(zone -> new ZoneView(clock, zone))
+                .collect(Collectors.toList());
+        clock.offset(Duration.ofDays(200));
+        for (ZoneView view : views) {
+            assertThat(view.zonedDateTime(),
+                    equalTo(clock.zonedDateTime().withZoneSameInstant(view.getZone())));
+            assertThat(view.instant(), sameInstance(clock.instant()));
+            assertThat(view.millis(), equalTo(clock.millis()));
+        }
+    }
+
+    @Test
+    public void testCachedUntilChanged() {
+        FixedClock clock = new FixedClock(DATETIME, UTC);
+        ZoneView view = new ZoneView(clock, TOKYO);
+        ZonedDateTime zdt = view.zonedDateTime();
+        assertThat(view.zonedDateTime(), sameInstance(zdt));
+        clock.offset(Duration.ofNanos(1));
+        assertThat(view.zonedDateTime(), not(sameInstance(zdt)));
+        assertThat(view.withZone(TOKYO), sameInstance(view));
+        assertThat(view.withZone(UTC).zonedDateTime(), equalTo(clock.zonedDateTime()));
+    }
+
+    @Test
+    public void testSetAtViewZone() {
+        FixedAlarmClock clock = new FixedAlarmClock(DATETIME, UTC);
+        AtomicReference<ZonedDateTime> triggered = new AtomicReference<>();
+        clock.alarm(triggered::set);
+        ZoneView view = new ZoneView(clock, TOKYO);
+        view.setDateTime(LocalDateTime.of(2016, 6, 1, 9, 0));
+        assertThat(clock.dateTime(), equalTo(LocalDateTime.of(2016, 6, 1, 0, 0)));
+        assertThat(triggered.get(), equalTo(clock.zonedDateTime()));
+        view.setTime(LocalTime.of(10, 0));
+        view.setDate(LocalDate.of(2016, 6, 2));
+        assertThat(clock.dateTime(), equalTo(LocalDateTime.of(2016, 6, 2, 1, 0)));
+        assertThat(view.offset(Duration.ofHours(1)), sameInstance(view));
+        assertThat(ZONES.stream().map(zone -> new ZoneView(clock, zone).instant())
+                .distinct().collect(Collectors.toList()), contains(clock.instant()));
+    }
+}